@@ -0,0 +1,68 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage updates from many stage-executor threads written to H2 database directly
+ * and through {@link BatchingTaskManager}. Number of commits per stage update is printed
+ * after each trial.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class BatchingTaskManagerBenchmark {
+    private static final int TASKS_PER_THREAD = 64;
+    private static final int MAX_THREADS = 256;
+
+    @Param({"direct", "batching"})
+    private String mode;
+
+    private H2TaskManager h2;
+    private TaskManager<BenchTask> manager;
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong threads = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        h2 = new H2TaskManager("BatchingTaskManagerBenchmark", TASKS_PER_THREAD * MAX_THREADS);
+        manager = "batching".equals(mode) ? new BatchingTaskManager<BenchTask>(h2, 256, 50) : h2;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if(manager instanceof BatchingTaskManager) ((BatchingTaskManager<BenchTask>) manager).close();
+        System.out.println();
+        System.out.println("Mode: [" + mode + "], stage updates: [" + updates.get() + "], commits: [" + h2.commits() + "], " +
+                "commits per update: [" + ((double) h2.commits() / updates.get()) + "]");
+        h2.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadTasks {
+        private long first;
+        private int counter;
+
+        @Setup
+        public void setup(BatchingTaskManagerBenchmark bench) {
+            first = bench.threads.getAndIncrement() * TASKS_PER_THREAD;
+        }
+    }
+
+    @Benchmark
+    public void updateStage(ThreadTasks tasks) {
+        tasks.counter += 1;
+        long id = tasks.first + (tasks.counter % TASKS_PER_THREAD);
+        manager.updateStage(id, (tasks.counter & 1) == 0 ? "RUNNING" : "COMPLETED");
+        updates.incrementAndGet();
+    }
+}
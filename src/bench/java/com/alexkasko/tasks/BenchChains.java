@@ -0,0 +1,75 @@
+package com.alexkasko.tasks;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Shared fixtures for benchmarks: chains of arbitrary length, no-op processors and executors
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+public class BenchChains {
+    public static final String START = "CREATED";
+    public static final String NOOP_PROCESSOR = "noop";
+    public static final TaskStageProcessor NOOP = new NoopProcessor();
+    public static final TaskProcessorProvider NOOP_PROVIDER = new NoopProvider();
+    public static final Executor SAME_THREAD = new SameThreadExecutor();
+
+    private BenchChains() {
+    }
+
+    /**
+     * Builds chain with given number of processing stages, all of them use no-op processor
+     *
+     * @param stages number of processing stages
+     * @return stage chain
+     */
+    public static TaskStageChain chain(int stages) {
+        TaskStageChain.Builder builder = TaskStageChain.builder(START);
+        for(int i = 0; i < stages; i++) {
+            builder.add(intermediate(i), completed(i), NOOP_PROCESSOR);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Intermediate name of the stage with given index
+     *
+     * @param index stage index
+     * @return intermediate stage name
+     */
+    public static String intermediate(int index) {
+        return "RUNNING_" + index;
+    }
+
+    /**
+     * Completed name of the stage with given index
+     *
+     * @param index stage index
+     * @return completed stage name
+     */
+    public static String completed(int index) {
+        return "COMPLETED_" + index;
+    }
+
+    private static class NoopProcessor implements TaskStageProcessor {
+        @Override
+        public void process(long taskId) throws Exception {
+            // no-op
+        }
+    }
+
+    private static class NoopProvider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return NOOP;
+        }
+    }
+
+    private static class SameThreadExecutor implements Executor {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+}
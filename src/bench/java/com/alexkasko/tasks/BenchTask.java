@@ -0,0 +1,61 @@
+package com.alexkasko.tasks;
+
+/**
+ * Minimal task implementation for benchmarks, chain instance is shared between tasks
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+public class BenchTask implements Task {
+    private final long id;
+    private final TaskStageChain chain;
+    private volatile String stage;
+    private volatile String status;
+
+    /**
+     * Constructor
+     *
+     * @param id task id
+     * @param chain stage chain
+     */
+    public BenchTask(long id, TaskStageChain chain) {
+        this.id = id;
+        this.chain = chain;
+        reset();
+    }
+
+    /**
+     * Moves task back to the start stage, so it may be fired again
+     */
+    public void reset() {
+        this.stage = BenchChains.START;
+        this.status = "NORMAL";
+    }
+
+    @Override
+    public TaskStageChain stageChain() {
+        return chain;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getStageName() {
+        return stage;
+    }
+
+    void changeStage(String stage) {
+        this.stage = stage;
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    void changeStatus(String status) {
+        this.status = status;
+    }
+}
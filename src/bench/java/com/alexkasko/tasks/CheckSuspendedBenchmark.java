@@ -0,0 +1,70 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskEngine#checkSuspended(long)} costs under contention: {@code empty} group
+ * checks ids that are never suspended, {@code contended} group runs checkers
+ * concurrently with a thread that keeps suspending tasks.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckSuspendedBenchmark {
+    private static final int IDS_MASK = 1023;
+
+    private TaskEngine engine;
+
+    @Setup
+    public void setup() {
+        engine = new TaskEngine(BenchChains.SAME_THREAD, new InMemoryTaskManager(), BenchChains.NOOP_PROVIDER);
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        private long id;
+
+        long next() {
+            id += 1;
+            return id & IDS_MASK;
+        }
+    }
+
+    @Benchmark
+    @Group("empty")
+    @GroupThreads(16)
+    public boolean emptyCheck(Counter counter) {
+        return check(counter.next());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(15)
+    public boolean contendedCheck(Counter counter) {
+        return check(counter.next());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public boolean contendedSuspend(Counter counter) {
+        return engine.suspend(counter.next());
+    }
+
+    private boolean check(long id) {
+        try {
+            engine.checkSuspended(id);
+            return false;
+        } catch(TaskSuspendedException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.alexkasko.tasks;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims all tasks from H2 tasks table using three-statement pattern from README
+ * ({@code SELECTED} status update, select, {@code PROCESSING} status update) and using
+ * {@link JdbcTaskManager} in different claim modes with given batch size.
+ * Table is refilled before each invocation.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClaimBenchmark {
+    private static final TaskStageChain CHAIN = BenchChains.chain(1);
+
+    @Param({"10000", "100000"})
+    private int rows;
+    @Param({"sample", "OPTIMISTIC", "UPDATE_AND_READ"})
+    private String mode;
+    @Param({"1000"})
+    private int batchSize;
+
+    private JdbcConnectionPool pool;
+    private JdbcTaskManager<BenchTask> manager;
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:ClaimBenchmark;DB_CLOSE_DELAY=-1", "sa", "");
+        execute("drop table if exists tasks");
+        execute("create table tasks(id bigint primary key, stage varchar(255), status varchar(255), " +
+                "lease_owner varchar(255), lease_expiry bigint)");
+        execute("create index tasks_status_idx on tasks(status)");
+        execute("create index tasks_lease_idx on tasks(lease_owner, lease_expiry)");
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() throws SQLException {
+        execute("delete from tasks");
+        Connection conn = pool.getConnection();
+        try {
+            PreparedStatement ps = conn.prepareStatement("insert into tasks(id, stage, status) values(?, 'CREATED', 'NORMAL')");
+            for(int i = 0; i < rows; i++) {
+                ps.setLong(1, i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        } finally {
+            conn.close();
+        }
+        // new manager for each invocation, leases are not released
+        if(!"sample".equals(mode)) manager = JdbcTaskManager.builder(pool, new Mapper())
+                .claimMode(JdbcTaskManager.ClaimMode.valueOf(mode))
+                .batchSize(batchSize)
+                .build();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeManager() {
+        if(null != manager) manager.close();
+        manager = null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.dispose();
+    }
+
+    @Benchmark
+    public int claimAll() throws SQLException {
+        if("sample".equals(mode)) return claimSample().size();
+        int res = 0;
+        for(int count = -1; 0 != count; res += count) {
+            count = manager.markProcessingAndLoad().size();
+        }
+        if(rows != res) throw new IllegalStateException("Claimed: [" + res + "], expected: [" + rows + "]");
+        return res;
+    }
+
+    private List<BenchTask> claimSample() throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            List<BenchTask> res = new ArrayList<BenchTask>();
+            Statement st = conn.createStatement();
+            int updated = st.executeUpdate("update tasks set status='SELECTED' where (status='NORMAL' and stage='CREATED') or status='RESUMED'");
+            if(updated > 0) {
+                ResultSet rs = st.executeQuery("select * from tasks where status='SELECTED'");
+                while(rs.next()) {
+                    res.add(new BenchTask(rs.getLong("id"), CHAIN));
+                }
+                rs.close();
+                st.executeUpdate("update tasks set status='PROCESSING' where status='SELECTED'");
+            }
+            st.close();
+            conn.commit();
+            return res;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            Statement st = conn.createStatement();
+            st.execute(sql);
+            st.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static class Mapper implements JdbcTaskManager.TaskMapper<BenchTask> {
+        @Override
+        public BenchTask map(ResultSet rs) throws SQLException {
+            return new BenchTask(rs.getLong("id"), CHAIN);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.newSetFromMap;
+
+/**
+ * Suspension set lookups: boxed {@code ConcurrentHashMap} based set compared to
+ * {@link ConcurrentLongHashSet}, missing ids are removed from empty set and from set
+ * with a few suspended tasks, as {@link TaskEngine#checkSuspended(long)} does.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ConcurrentLongHashSetBenchmark {
+    private static final int IDS_MASK = 1023;
+
+    @Param({"0", "16"})
+    private int suspended;
+
+    private final Set<Long> boxed = newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final ConcurrentLongHashSet primitive = new ConcurrentLongHashSet();
+
+    @Setup
+    public void setup() {
+        // ids out of checked range
+        for(long i = 0; i < suspended; i++) {
+            boxed.add(-i - 1);
+            primitive.add(-i - 1);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        private long id;
+
+        long next() {
+            id += 1;
+            return id & IDS_MASK;
+        }
+    }
+
+    @Benchmark
+    public boolean boxedRemove(Counter counter) {
+        return boxed.remove(counter.next());
+    }
+
+    @Benchmark
+    public boolean primitiveRemove(Counter counter) {
+        return primitive.remove(counter.next());
+    }
+}
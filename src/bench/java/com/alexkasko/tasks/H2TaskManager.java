@@ -0,0 +1,145 @@
+package com.alexkasko.tasks;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plain JDBC tasks DAO over in-memory H2 database for benchmarks, each call is a separate transaction.
+ * Counts commits to be able to compare database load between engine modes.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+public class H2TaskManager implements TaskBatchManager<BenchTask> {
+    private final JdbcConnectionPool pool;
+    private final AtomicLong commits = new AtomicLong();
+
+    /**
+     * Constructor, creates tasks table and inserts given number of tasks
+     *
+     * @param dbName in-memory database name
+     * @param tasksCount number of tasks to insert
+     */
+    public H2TaskManager(String dbName, int tasksCount) {
+        this.pool = JdbcConnectionPool.create("jdbc:h2:mem:" + dbName + ";DB_CLOSE_DELAY=-1", "sa", "");
+        this.pool.setMaxConnections(64);
+        Connection conn = null;
+        try {
+            conn = pool.getConnection();
+            Statement st = conn.createStatement();
+            st.execute("drop table if exists tasks");
+            st.execute("create table tasks(id bigint primary key, stage varchar(255), status varchar(255))");
+            st.close();
+            PreparedStatement ps = conn.prepareStatement("insert into tasks(id, stage, status) values(?, 'CREATED', 'PROCESSING')");
+            for(int i = 0; i < tasksCount; i++) {
+                ps.setLong(1, i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        } catch(SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            close(conn);
+        }
+    }
+
+    /**
+     * Returns number of committed transactions
+     *
+     * @return number of committed transactions
+     */
+    public long commits() {
+        return commits.get();
+    }
+
+    /**
+     * Closes connection pool
+     */
+    public void close() {
+        pool.dispose();
+    }
+
+    @Override
+    public Collection<BenchTask> markProcessingAndLoad() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void updateStages(long[] taskIds, String[] stages) {
+        Connection conn = null;
+        try {
+            conn = pool.getConnection();
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement("update tasks set stage=? where status='PROCESSING' and id=?");
+            for(int i = 0; i < taskIds.length; i++) {
+                ps.setString(1, stages[i]);
+                ps.setLong(2, taskIds[i]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+            conn.commit();
+            commits.incrementAndGet();
+        } catch(SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            close(conn);
+        }
+    }
+
+    @Override
+    public void updateStage(long taskId, String stage) {
+        update("update tasks set stage=? where status='PROCESSING' and id=?", stage, taskId);
+    }
+
+    @Override
+    public void updateStatusSuccess(long taskId) {
+        update("update tasks set status=? where id=?", "NORMAL", taskId);
+    }
+
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        update("update tasks set status=? where id=?", "SUSPENDED", taskId);
+    }
+
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        update("update tasks set status='ERROR', stage=? where id=?", lastCompletedStage, taskId);
+    }
+
+    private void update(String sql, String value, long taskId) {
+        Connection conn = null;
+        try {
+            conn = pool.getConnection();
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement(sql);
+            ps.setString(1, value);
+            ps.setLong(2, taskId);
+            ps.executeUpdate();
+            ps.close();
+            conn.commit();
+            commits.incrementAndGet();
+        } catch(SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            close(conn);
+        }
+    }
+
+    private static void close(Connection conn) {
+        if(null == conn) return;
+        try {
+            conn.close();
+        } catch(SQLException e) {
+            // ignore
+        }
+    }
+}
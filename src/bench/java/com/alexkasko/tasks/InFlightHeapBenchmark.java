@@ -0,0 +1,122 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by engine for tasks in flight: tasks with payload of given size are fired into executor,
+ * that queues runnables without running them. Manager doesn't keep returned tasks, so everything
+ * released with the engine was retained by it. Retained bytes per task are printed after each invocation.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InFlightHeapBenchmark {
+    private static final int TASKS_COUNT = 10000;
+    private static final TaskStageChain CHAIN = BenchChains.chain(10);
+
+    @Param({"0", "4096"})
+    private int payloadBytes;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private QueueExecutor executor;
+    private TaskEngine engine;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        executor = new QueueExecutor();
+        engine = new TaskEngine(executor, new PayloadTaskManager(payloadBytes), BenchChains.NOOP_PROVIDER);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        int inFlight = engine.inFlight();
+        long used = usedHeap();
+        executor = null;
+        engine = null;
+        // difference with heap after engine is released, so garbage from previous invocations doesn't count
+        long retained = used - usedHeap();
+        System.out.println();
+        System.out.println("Payload: [" + payloadBytes + "] bytes, tasks in flight: [" + inFlight + "], " +
+                "retained: [" + retained / 1024 + "] KB, per task: [" + retained / TASKS_COUNT + "] bytes");
+    }
+
+    @Benchmark
+    public int fire() {
+        return engine.fire();
+    }
+
+    // collects until used heap stops shrinking
+    private long usedHeap() {
+        long res = Long.MAX_VALUE;
+        for(int i = 0; i < 10; i++) {
+            System.gc();
+            long used = memory.getHeapMemoryUsage().getUsed();
+            if(used >= res) break;
+            res = used;
+        }
+        return res;
+    }
+
+    private static class PayloadTask extends BenchTask {
+        private final byte[] payload;
+
+        private PayloadTask(long id, int payloadBytes) {
+            super(id, CHAIN);
+            this.payload = new byte[payloadBytes];
+        }
+    }
+
+    private static class PayloadTaskManager implements TaskManager<BenchTask> {
+        private final int payloadBytes;
+
+        private PayloadTaskManager(int payloadBytes) {
+            this.payloadBytes = payloadBytes;
+        }
+
+        @Override
+        public Collection<BenchTask> markProcessingAndLoad() {
+            List<BenchTask> res = new ArrayList<BenchTask>(TASKS_COUNT);
+            for(int i = 0; i < TASKS_COUNT; i++) res.add(new PayloadTask(i, payloadBytes));
+            return res;
+        }
+
+        @Override
+        public void updateStage(long taskId, String stage) {
+        }
+
+        @Override
+        public void updateStatusSuccess(long taskId) {
+        }
+
+        @Override
+        public void updateStatusSuspended(long taskId) {
+        }
+
+        @Override
+        public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        }
+    }
+
+    private static class QueueExecutor implements Executor {
+        private final List<Runnable> queued = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.alexkasko.tasks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory tasks DAO for benchmarks, {@link #markProcessingAndLoad()} returns
+ * the same preconfigured batch on every call. Counts all calls to be able to compare
+ * DAO round trips between engine modes.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+public class InMemoryTaskManager implements TaskManager<BenchTask> {
+    private final ConcurrentMap<Long, BenchTask> tasks = new ConcurrentHashMap<Long, BenchTask>();
+    private volatile List<BenchTask> batch = Collections.emptyList();
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * Sets batch, that will be returned by all following {@link #markProcessingAndLoad()} calls
+     *
+     * @param batch tasks batch
+     */
+    public void setBatch(List<BenchTask> batch) {
+        for(BenchTask ta : batch) tasks.put(ta.getId(), ta);
+        this.batch = batch;
+    }
+
+    /**
+     * Returns number of DAO calls made by engine
+     *
+     * @return number of DAO calls
+     */
+    public long calls() {
+        return calls.get();
+    }
+
+    /**
+     * Returns task by id
+     *
+     * @param taskId task id
+     * @return task instance
+     */
+    protected BenchTask task(long taskId) {
+        return tasks.get(taskId);
+    }
+
+    @Override
+    public Collection<BenchTask> markProcessingAndLoad() {
+        calls.incrementAndGet();
+        List<BenchTask> res = batch;
+        for(BenchTask ta : res) {
+            ta.reset();
+            ta.changeStatus("PROCESSING");
+        }
+        return res;
+    }
+
+    @Override
+    public void updateStage(long taskId, String stage) {
+        calls.incrementAndGet();
+        tasks.get(taskId).changeStage(stage);
+    }
+
+    @Override
+    public void updateStatusSuccess(long taskId) {
+        calls.incrementAndGet();
+        tasks.get(taskId).changeStatus("NORMAL");
+    }
+
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        calls.incrementAndGet();
+        tasks.get(taskId).changeStatus("SUSPENDED");
+    }
+
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        calls.incrementAndGet();
+        BenchTask task = tasks.get(taskId);
+        task.changeStatus("ERROR");
+        task.changeStage(lastCompletedStage);
+    }
+}
@@ -0,0 +1,29 @@
+package com.alexkasko.tasks;
+
+/**
+ * In-memory tasks DAO for benchmarks with coalesced stage transitions
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+public class InMemoryTransitionManager extends InMemoryTaskManager implements TaskTransitionManager<BenchTask> {
+
+    @Override
+    public void updateStageTransition(long taskId, String completedStage, String startedStage) {
+        updateStage(taskId, startedStage);
+    }
+
+    @Override
+    public void updateStageAndStatusSuccess(long taskId, String completedStage) {
+        BenchTask task = task(taskId);
+        updateStage(taskId, completedStage);
+        task.changeStatus("NORMAL");
+    }
+
+    @Override
+    public void updateStageAndStatusSuspended(long taskId, String lastCompletedStage) {
+        BenchTask task = task(taskId);
+        updateStage(taskId, lastCompletedStage);
+        task.changeStatus("SUSPENDED");
+    }
+}
@@ -0,0 +1,138 @@
+package com.alexkasko.tasks;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes all tasks from H2 tasks table with given number of engine nodes, each node
+ * uses its own {@link JdbcTaskManager} with built-in polling and bounded capacity.
+ * Tasks have two no-op stages, table is refilled before each invocation.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JdbcNodesBenchmark {
+    private static final TaskStageChain CHAIN = BenchChains.chain(2);
+
+    @Param({"2000"})
+    private int tasks;
+    @Param({"1", "4"})
+    private int nodes;
+    @Param({"50"})
+    private int capacity;
+
+    private JdbcConnectionPool pool;
+    private ExecutorService executor;
+    private final List<JdbcTaskManager<BenchTask>> managers = new ArrayList<JdbcTaskManager<BenchTask>>();
+    private final List<TaskEngine> engines = new ArrayList<TaskEngine>();
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:JdbcNodesBenchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        pool.setMaxConnections(64);
+        execute("drop table if exists tasks");
+        execute("create table tasks(id bigint primary key, stage varchar(255), status varchar(255), " +
+                "lease_owner varchar(255), lease_expiry bigint)");
+        executor = Executors.newFixedThreadPool(nodes * 2);
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() throws SQLException {
+        execute("delete from tasks");
+        Connection conn = pool.getConnection();
+        try {
+            PreparedStatement ps = conn.prepareStatement("insert into tasks(id, stage, status) values(?, 'CREATED', 'NORMAL')");
+            for(int i = 0; i < tasks; i++) {
+                ps.setLong(1, i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        } finally {
+            conn.close();
+        }
+        for(int i = 0; i < nodes; i++) {
+            JdbcTaskManager<BenchTask> manager = JdbcTaskManager.builder(pool, new Mapper())
+                    .nodeId("node" + i)
+                    .build();
+            managers.add(manager);
+            engines.add(TaskEngine.builder(executor, manager, BenchChains.NOOP_PROVIDER)
+                    .capacity(capacity)
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeNodes() throws InterruptedException {
+        for(TaskEngine en : engines) en.shutdown(10000);
+        for(JdbcTaskManager<BenchTask> ma : managers) ma.close();
+        engines.clear();
+        managers.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        pool.dispose();
+    }
+
+    @Benchmark
+    public int processAll() throws Exception {
+        for(TaskEngine en : engines) en.startPolling(5, 20);
+        for(;;) {
+            int finished = count("select count(*) from tasks where status = 'NORMAL' and stage = '" +
+                    BenchChains.completed(1) + "'");
+            if(tasks == finished) return finished;
+            Thread.sleep(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            Statement st = conn.createStatement();
+            st.execute(sql);
+            st.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery(sql);
+            rs.next();
+            int res = rs.getInt(1);
+            st.close();
+            return res;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static class Mapper implements JdbcTaskManager.TaskMapper<BenchTask> {
+        @Override
+        public BenchTask map(ResultSet rs) throws SQLException {
+            return new BenchTask(rs.getLong("id"), CHAIN);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine per-stage overhead: single task with no-op processors is fired and run
+ * through all its stages in the caller thread on each invocation.
+ * Score divided by number of stages gives per-stage overhead
+ * (stage lookups, DAO calls, listeners checks, suspension checks).
+ * {@code coalesced} mode uses DAO with {@link TaskTransitionManager} support,
+ * {@code submit} runs the same task using {@link TaskEngine#submit(Task)} without claiming it from DAO,
+ * {@code metrics} mode reports to {@link HistogramTaskEngineMetrics}.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageRunnableBenchmark {
+    @Param({"1", "10", "40"})
+    private int stages;
+    @Param({"false", "true"})
+    private boolean coalesced;
+    @Param({"false", "true"})
+    private boolean metrics;
+
+    private TaskEngine engine;
+    private BenchTask task;
+
+    @Setup
+    public void setup() {
+        InMemoryTaskManager manager = coalesced ? new InMemoryTransitionManager() : new InMemoryTaskManager();
+        task = new BenchTask(42, BenchChains.chain(stages));
+        manager.setBatch(Collections.singletonList(task));
+        TaskEngine.Builder builder = TaskEngine.builder(BenchChains.SAME_THREAD, manager, BenchChains.NOOP_PROVIDER);
+        if(metrics) builder.metrics(new HistogramTaskEngineMetrics());
+        engine = builder.build();
+    }
+
+    @Benchmark
+    public int runStages() {
+        return engine.fire();
+    }
+
+    @Benchmark
+    public boolean submit() {
+        task.reset();
+        return engine.submit(task);
+    }
+}
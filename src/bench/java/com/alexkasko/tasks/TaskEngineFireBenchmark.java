@@ -0,0 +1,50 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskEngine#fire()} dispatch throughput, executor drops all runnables,
+ * so only claim processing and stage runnable creation are measured.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskEngineFireBenchmark {
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    private TaskEngine engine;
+
+    @Setup
+    public void setup() {
+        TaskStageChain chain = BenchChains.chain(10);
+        List<BenchTask> batch = new ArrayList<BenchTask>(batchSize);
+        for(int i = 0; i < batchSize; i++) batch.add(new BenchTask(i, chain));
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        manager.setBatch(batch);
+        engine = new TaskEngine(new DroppingExecutor(), manager, BenchChains.NOOP_PROVIDER);
+    }
+
+    @Benchmark
+    public int fire() {
+        return engine.fire();
+    }
+
+    private static class DroppingExecutor implements Executor {
+        @Override
+        public void execute(Runnable command) {
+            // dropped deliberately
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.alexkasko.tasks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stage navigation costs for different chain lengths. Single-operation benchmarks
+ * use the stage before the last one (the worst case for list scanning),
+ * {@code walk} navigates through the whole chain the same way {@code TaskEngine} does.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskStageChainBenchmark {
+    @Param({"2", "10", "40"})
+    private int stages;
+
+    private TaskStageChain chain;
+    private String startName;
+    private String lastIntermediateName;
+    private TaskStageChain.Stage penultimate;
+
+    @Setup
+    public void setup() {
+        chain = BenchChains.chain(stages);
+        startName = BenchChains.START;
+        lastIntermediateName = BenchChains.intermediate(stages - 1);
+        penultimate = chain.previous(chain.forName(lastIntermediateName));
+    }
+
+    @Benchmark
+    public Object forName() {
+        return chain.forName(lastIntermediateName);
+    }
+
+    @Benchmark
+    public Object next() {
+        return chain.next(penultimate);
+    }
+
+    @Benchmark
+    public Object previous() {
+        return chain.previous(penultimate);
+    }
+
+    @Benchmark
+    public boolean hasNext() {
+        return chain.hasNext(penultimate);
+    }
+
+    @Benchmark
+    public void walk(Blackhole bh) {
+        TaskStageChain.Stage stage = chain.forName(startName);
+        while(chain.hasNext(stage)) {
+            stage = chain.next(stage);
+            bh.consume(chain.previous(stage));
+        }
+        bh.consume(stage);
+    }
+}
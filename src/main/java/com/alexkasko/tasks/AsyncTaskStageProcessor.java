@@ -0,0 +1,28 @@
+package com.alexkasko.tasks;
+
+/**
+ * {@link TaskStageProcessor} extension for stages, that wait on external systems.
+ * Processor starts the work and returns {@link TaskStageFuture}, that must be completed later
+ * from any thread. {@link TaskEngine} releases executor thread while the stage is pending and
+ * continues the task in executor after future completion. Suspension, error and rollback semantics
+ * are the same as for synchronous processors: failing future with {@link TaskSuspendedException}
+ * suspends the task, failing it with any other exception switches task into 'error' status.
+ * {@link TaskEngine} calls {@link #processAsync(long)} for such processors,
+ * {@link #process(long)} is not called by engine.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see TaskStageFuture
+ */
+public interface AsyncTaskStageProcessor extends TaskStageProcessor {
+    /**
+     * Starts some business oriented work to do on task, must not block
+     *
+     * @param taskId task id
+     * @return future, that will be completed after the work is done, must not be null
+     * @throws TaskSuspendedException task will rolled back to last completed stage and switched into 'suspended' status
+     * @throws Exception task will rolled back to last completed stage and switched into 'error' status
+     */
+    TaskStageFuture processAsync(long taskId) throws Exception;
+}
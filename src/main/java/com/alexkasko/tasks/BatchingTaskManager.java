@@ -0,0 +1,463 @@
+package com.alexkasko.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind {@link TaskManager} decorator. Stage updates are buffered in memory and flushed
+ * to the wrapped manager in batches when buffer reaches {@code maxBatchSize} or every
+ * {@code flushIntervalMillis}. Only the latest buffered stage of each task is written on flush.
+ * If wrapped manager implements {@link TaskBatchManager}, each flush is a single
+ * {@link TaskBatchManager#updateStages(long[], String[])} call, otherwise stages are written one by one.
+ * All status changes flush the buffer first, so they are always written after all
+ * previous stage updates of the same task. Stage update, that follows status change of the same task
+ * in the same thread (e.g. stage rollback on suspension by the caller outside of {@link TaskEngine}),
+ * is written through, so it's persisted before the task may be claimed again.
+ *
+ * Instances created with constructors don't implement {@link BoundedTaskManager} and {@link StreamingTaskManager},
+ * use {@link #wrap(TaskManager, int, long)} to keep these interfaces of the wrapped manager.
+ *
+ * Stage updates, that wrapped manager failed to write, are kept and written on the following flushes
+ * before the newer updates, updates failed {@code 3} times are dropped with error. Failed flush throws
+ * exception, status change fails only if stage updates of the same task were not written.
+ *
+ * Buffered stage updates will be lost on JVM crash, tasks will be left in the last flushed stage.
+ * It's the same situation as the crash during stage processing, so startup cleanup procedure should
+ * handle it (see {@link TaskStageChain#lastCompletedStage(String)}).
+ * {@link #close()} should be called on application shutdown to flush remaining updates. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskBatchManager
+ * @see TaskEngine
+ */
+public class BatchingTaskManager<T extends Task> implements TaskTransitionManager<T> {
+    private static final Log logger = LogFactory.getLog(BatchingTaskManager.class);
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final TaskManager<T> delegate;
+    private final int maxBatchSize;
+    private final Queue<PendingStage> buffer = new ConcurrentLinkedQueue<PendingStage>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // updates failed on previous flushes, guarded by flush lock
+    private final Map<Long, FailedStage> failed = new LinkedHashMap<Long, FailedStage>();
+    // task, which status was changed last in current thread, its following stage update is written through
+    private final ThreadLocal<Long> released = new ThreadLocal<Long>();
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final ScheduledFuture<?> flushFuture;
+
+    /**
+     * Constructor, creates own daemon thread for periodic flushes
+     *
+     * @param delegate wrapped tasks DAO
+     * @param maxBatchSize buffer size that triggers flush from the updating thread
+     * @param flushIntervalMillis period of background flushes
+     * @throws TaskEngineException on invalid input
+     */
+    public BatchingTaskManager(TaskManager<T> delegate, int maxBatchSize, long flushIntervalMillis)
+            throws TaskEngineException {
+        this(delegate, maxBatchSize, flushIntervalMillis,
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("task-engine-batching")), true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param delegate wrapped tasks DAO
+     * @param maxBatchSize buffer size that triggers flush from the updating thread
+     * @param flushIntervalMillis period of background flushes
+     * @param scheduler scheduler to run background flushes on, won't be shut down on {@link #close()}
+     * @throws TaskEngineException on invalid input
+     */
+    public BatchingTaskManager(TaskManager<T> delegate, int maxBatchSize, long flushIntervalMillis,
+                               ScheduledExecutorService scheduler) throws TaskEngineException {
+        this(delegate, maxBatchSize, flushIntervalMillis, scheduler, false);
+    }
+
+    /**
+     * Creates decorator, that implements {@link BoundedTaskManager} and {@link StreamingTaskManager}
+     * if wrapped manager implements them, uses own daemon thread for periodic flushes
+     *
+     * @param delegate wrapped tasks DAO
+     * @param maxBatchSize buffer size that triggers flush from the updating thread
+     * @param flushIntervalMillis period of background flushes
+     * @param <T> task type
+     * @return batching manager
+     * @throws TaskEngineException on invalid input
+     */
+    public static <T extends Task> BatchingTaskManager<T> wrap(TaskManager<T> delegate, int maxBatchSize,
+                                                               long flushIntervalMillis) throws TaskEngineException {
+        return wrap(delegate, maxBatchSize, flushIntervalMillis,
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("task-engine-batching")), true);
+    }
+
+    /**
+     * Creates decorator, that implements {@link BoundedTaskManager} and {@link StreamingTaskManager}
+     * if wrapped manager implements them
+     *
+     * @param delegate wrapped tasks DAO
+     * @param maxBatchSize buffer size that triggers flush from the updating thread
+     * @param flushIntervalMillis period of background flushes
+     * @param scheduler scheduler to run background flushes on, won't be shut down on {@link #close()}
+     * @param <T> task type
+     * @return batching manager
+     * @throws TaskEngineException on invalid input
+     */
+    public static <T extends Task> BatchingTaskManager<T> wrap(TaskManager<T> delegate, int maxBatchSize,
+                                                               long flushIntervalMillis, ScheduledExecutorService scheduler)
+            throws TaskEngineException {
+        return wrap(delegate, maxBatchSize, flushIntervalMillis, scheduler, false);
+    }
+
+    private static <T extends Task> BatchingTaskManager<T> wrap(TaskManager<T> delegate, int maxBatchSize,
+                                                                long flushIntervalMillis, ScheduledExecutorService scheduler,
+                                                                boolean ownScheduler) {
+        boolean bounded = delegate instanceof BoundedTaskManager;
+        boolean streaming = delegate instanceof StreamingTaskManager;
+        if(bounded && streaming) return new BoundedStreaming<T>(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+        if(bounded) return new Bounded<T>(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+        if(streaming) return new Streaming<T>(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+        return new BatchingTaskManager<T>(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+    }
+
+    private BatchingTaskManager(TaskManager<T> delegate, int maxBatchSize, long flushIntervalMillis,
+                                ScheduledExecutorService scheduler, boolean ownScheduler) throws TaskEngineException {
+        if(null == delegate) throw new TaskEngineException("Provided delegate is null");
+        if(maxBatchSize <= 0) throw new TaskEngineException("Provided maxBatchSize: [" + maxBatchSize + "] must be positive");
+        if(flushIntervalMillis <= 0) throw new TaskEngineException(
+                "Provided flushIntervalMillis: [" + flushIntervalMillis + "] must be positive");
+        if(null == scheduler) throw new TaskEngineException("Provided scheduler is null");
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+        this.flushFuture = scheduler.scheduleWithFixedDelay(new FlushRunnable(), flushIntervalMillis,
+                flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Calls wrapped manager
+     *
+     * @return collection of tasks to run
+     */
+    @Override
+    public Collection<? extends T> markProcessingAndLoad() {
+        return delegate.markProcessingAndLoad();
+    }
+
+    /**
+     * Buffers stage update, writes it through using wrapped manager if it follows
+     * status change of the same task in the current thread
+     *
+     * @param taskId task id
+     * @param stage new stage
+     */
+    @Override
+    public void updateStage(long taskId, String stage) {
+        Long last = released.get();
+        if(null != last) {
+            released.remove();
+            if(taskId == last) {
+                flushBefore(taskId);
+                delegate.updateStage(taskId, stage);
+                return;
+            }
+        }
+        buffer.add(new PendingStage(taskId, stage));
+        if(buffered.incrementAndGet() >= maxBatchSize) {
+            Map<Long, Exception> errors = new LinkedHashMap<Long, Exception>();
+            flushBuffer(errors);
+            // updates are kept and will be written on the next flush
+            if(!errors.isEmpty()) logger.warn("Error writing stages of tasks: " + errors.keySet());
+        }
+    }
+
+    /**
+     * Buffers next stage start, completed stage is not written
+     *
+     * @param taskId task id
+     * @param completedStage completed name of the just finished stage
+     * @param startedStage intermediate name of the next stage
+     */
+    @Override
+    public void updateStageTransition(long taskId, String completedStage, String startedStage) {
+        updateStage(taskId, startedStage);
+    }
+
+    /**
+     * Flushes buffer and writes last stage and status using wrapped manager
+     *
+     * @param taskId task id
+     * @param completedStage completed name of the last stage
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateStageAndStatusSuccess(long taskId, String completedStage) {
+        flushBefore(taskId);
+        if(delegate instanceof TaskTransitionManager) {
+            ((TaskTransitionManager<T>) delegate).updateStageAndStatusSuccess(taskId, completedStage);
+        } else {
+            delegate.updateStage(taskId, completedStage);
+            delegate.updateStatusSuccess(taskId);
+        }
+        released.set(taskId);
+    }
+
+    /**
+     * Flushes buffer and writes rolled back stage and status using wrapped manager
+     *
+     * @param taskId task id
+     * @param lastCompletedStage name of last completed stage
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateStageAndStatusSuspended(long taskId, String lastCompletedStage) {
+        flushBefore(taskId);
+        if(delegate instanceof TaskTransitionManager) {
+            ((TaskTransitionManager<T>) delegate).updateStageAndStatusSuspended(taskId, lastCompletedStage);
+        } else {
+            delegate.updateStage(taskId, lastCompletedStage);
+            delegate.updateStatusSuspended(taskId);
+        }
+        released.set(taskId);
+    }
+
+    /**
+     * Flushes buffer and calls wrapped manager
+     *
+     * @param taskId task id
+     */
+    @Override
+    public void updateStatusSuccess(long taskId) {
+        flushBefore(taskId);
+        delegate.updateStatusSuccess(taskId);
+        released.set(taskId);
+    }
+
+    /**
+     * Flushes buffer and calls wrapped manager
+     *
+     * @param taskId task id
+     */
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        flushBefore(taskId);
+        delegate.updateStatusSuspended(taskId);
+        released.set(taskId);
+    }
+
+    /**
+     * Flushes buffer and calls wrapped manager
+     *
+     * @param taskId task id
+     * @param e exception
+     * @param lastCompletedStage name of last completed stage
+     */
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        flushBefore(taskId);
+        delegate.updateStatusError(taskId, e, lastCompletedStage);
+        released.set(taskId);
+    }
+
+    /**
+     * Writes all buffered stage updates and updates failed on previous flushes using wrapped manager.
+     * Updates, that were not written, are kept for the next flush.
+     *
+     * @return number of tasks, which stages were written
+     * @throws TaskEngineException if some of the updates were not written
+     */
+    public int flush() {
+        Map<Long, Exception> errors = new LinkedHashMap<Long, Exception>();
+        int written = flushBuffer(errors);
+        if(!errors.isEmpty()) throw new TaskEngineException("Error writing stages of tasks: " + errors.keySet(),
+                errors.values().iterator().next());
+        return written;
+    }
+
+    /**
+     * Stops background flushes and flushes remaining buffered updates.
+     * Shuts down scheduler if it was created by this instance.
+     */
+    public void close() {
+        flushFuture.cancel(false);
+        if(ownScheduler) scheduler.shutdown();
+        flush();
+    }
+
+    // status change must not overtake stage updates of the same task
+    private void flushBefore(long taskId) {
+        Map<Long, Exception> errors = new LinkedHashMap<Long, Exception>();
+        flushBuffer(errors);
+        if(errors.isEmpty()) return;
+        Exception own = errors.get(taskId);
+        if(null != own) throw new TaskEngineException("Error writing stage of task, id: [" + taskId + "]", own);
+        logger.warn("Error writing stages of tasks: " + errors.keySet());
+    }
+
+    // returns number of written updates, errors of not written ones are put to provided map
+    private int flushBuffer(Map<Long, Exception> errors) {
+        flushLock.lock();
+        try {
+            if(buffer.isEmpty() && failed.isEmpty()) return 0;
+            // failed updates are written before newer ones, only the latest stage is written for each task
+            Map<Long, String> latest = new LinkedHashMap<Long, String>();
+            for(FailedStage fs : failed.values()) {
+                latest.put(fs.taskId, fs.stage);
+            }
+            int drained = 0;
+            PendingStage ps;
+            while(null != (ps = buffer.poll())) {
+                FailedStage fs = failed.get(ps.taskId);
+                // newer stage gets its own attempts
+                if(null != fs && !fs.stage.equals(ps.stage)) failed.remove(ps.taskId);
+                latest.put(ps.taskId, ps.stage);
+                drained += 1;
+            }
+            buffered.addAndGet(-drained);
+            write(latest, errors);
+            for(Map.Entry<Long, String> en : latest.entrySet()) {
+                Exception ex = errors.get(en.getKey());
+                if(null == ex) {
+                    failed.remove(en.getKey());
+                    continue;
+                }
+                FailedStage fs = failed.get(en.getKey());
+                int attempts = null != fs ? fs.attempts + 1 : 1;
+                if(attempts < MAX_WRITE_ATTEMPTS) {
+                    failed.put(en.getKey(), new FailedStage(en.getKey(), en.getValue(), attempts));
+                } else {
+                    failed.remove(en.getKey());
+                    logger.error("Dropping stage: [" + en.getValue() + "] of task, id: [" + en.getKey() + "], " +
+                            "write failed: [" + attempts + "] times", ex);
+                }
+            }
+            return latest.size() - errors.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // batch write failure fails all updates
+    @SuppressWarnings("unchecked")
+    private void write(Map<Long, String> latest, Map<Long, Exception> errors) {
+        if(delegate instanceof TaskBatchManager) {
+            long[] ids = new long[latest.size()];
+            String[] stages = new String[latest.size()];
+            int i = 0;
+            for(Map.Entry<Long, String> en : latest.entrySet()) {
+                ids[i] = en.getKey();
+                stages[i] = en.getValue();
+                i += 1;
+            }
+            try {
+                ((TaskBatchManager<T>) delegate).updateStages(ids, stages);
+            } catch (Exception e) {
+                for(long id : ids) errors.put(id, e);
+            }
+        } else {
+            for(Map.Entry<Long, String> en : latest.entrySet()) {
+                try {
+                    delegate.updateStage(en.getKey(), en.getValue());
+                } catch (Exception e) {
+                    errors.put(en.getKey(), e);
+                }
+            }
+        }
+    }
+
+    private static class PendingStage {
+        private final long taskId;
+        private final String stage;
+
+        private PendingStage(long taskId, String stage) {
+            this.taskId = taskId;
+            this.stage = stage;
+        }
+    }
+
+    private static class FailedStage {
+        private final long taskId;
+        private final String stage;
+        private final int attempts;
+
+        private FailedStage(long taskId, String stage, int attempts) {
+            this.taskId = taskId;
+            this.stage = stage;
+            this.attempts = attempts;
+        }
+    }
+
+    private static class Bounded<T extends Task> extends BatchingTaskManager<T> implements BoundedTaskManager<T> {
+        private final BoundedTaskManager<T> bounded;
+
+        @SuppressWarnings("unchecked")
+        private Bounded(TaskManager<T> delegate, int maxBatchSize, long flushIntervalMillis,
+                        ScheduledExecutorService scheduler, boolean ownScheduler) {
+            super(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+            this.bounded = (BoundedTaskManager<T>) delegate;
+        }
+
+        @Override
+        public Collection<? extends T> markProcessingAndLoad(int limit) {
+            return bounded.markProcessingAndLoad(limit);
+        }
+    }
+
+    private static class Streaming<T extends Task> extends BatchingTaskManager<T> implements StreamingTaskManager<T> {
+        private final StreamingTaskManager<T> streaming;
+
+        @SuppressWarnings("unchecked")
+        private Streaming(TaskManager<T> delegate, int maxBatchSize, long flushIntervalMillis,
+                          ScheduledExecutorService scheduler, boolean ownScheduler) {
+            super(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+            this.streaming = (StreamingTaskManager<T>) delegate;
+        }
+
+        @Override
+        public TaskCursor<? extends T> openCursor() {
+            return streaming.openCursor();
+        }
+    }
+
+    private static class BoundedStreaming<T extends Task> extends Bounded<T> implements StreamingTaskManager<T> {
+        private final StreamingTaskManager<T> streaming;
+
+        @SuppressWarnings("unchecked")
+        private BoundedStreaming(TaskManager<T> delegate, int maxBatchSize, long flushIntervalMillis,
+                                 ScheduledExecutorService scheduler, boolean ownScheduler) {
+            super(delegate, maxBatchSize, flushIntervalMillis, scheduler, ownScheduler);
+            this.streaming = (StreamingTaskManager<T>) delegate;
+        }
+
+        @Override
+        public TaskCursor<? extends T> openCursor() {
+            return streaming.openCursor();
+        }
+    }
+
+    private class FlushRunnable implements Runnable {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.error("Error flushing buffered stage updates", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.alexkasko.tasks;
+
+import java.util.Collection;
+
+/**
+ * {@link TaskManager} extension that allows to limit number of tasks claimed on each fire.
+ * Required by {@link TaskEngine} in capacity-aware mode (see {@link TaskEngine.Builder#capacity(int)}).
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see TaskManager
+ */
+public interface BoundedTaskManager<T extends Task> extends TaskManager<T> {
+    /**
+     * Same as {@link TaskManager#markProcessingAndLoad()}, but must not mark and return
+     * more than {@code limit} tasks, remaining tasks must be left available for following calls.
+     * Will be called from fire-caller thread or from stage-executor's thread on re-fire.
+     *
+     * @param limit max number of tasks to return, always positive
+     * @return collection of tasks to run
+     */
+    Collection<? extends T> markProcessingAndLoad(int limit);
+}
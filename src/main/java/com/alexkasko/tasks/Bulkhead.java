@@ -0,0 +1,81 @@
+package com.alexkasko.tasks;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking concurrency limit for single stage processor. Tasks, that cannot get a permit,
+ * are parked in FIFO queue instead of blocking the thread. Released permit is handed over
+ * to the first parked task directly. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine.Builder#processorConcurrency(String, int)
+ */
+class Bulkhead {
+    private final int limit;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private int active = 0;
+    private final Queue<Runnable> parked = new ArrayDeque<Runnable>();
+
+    /**
+     * Constructor
+     *
+     * @param limit max number of concurrently processed stages
+     */
+    Bulkhead(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Takes permit or parks provided resumer, that will be called after permit will be handed over to it
+     *
+     * @param resumer runnable to call on permit hand over, must not block
+     * @return {@code true} if permit was taken, {@code false} if resumer was parked
+     */
+    boolean acquire(Runnable resumer) {
+        lock.lock();
+        try {
+            if(active < limit) {
+                active += 1;
+                return true;
+            }
+            parked.add(resumer);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases permit, handing it over to the first parked resumer
+     *
+     * @return parked resumer, that got the permit and must be called by caller, {@code null} if nothing was parked
+     */
+    Runnable release() {
+        lock.lock();
+        try {
+            Runnable next = parked.poll();
+            if(null == next) active -= 1;
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of parked tasks
+     *
+     * @return number of parked tasks
+     */
+    int parked() {
+        lock.lock();
+        try {
+            return parked.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
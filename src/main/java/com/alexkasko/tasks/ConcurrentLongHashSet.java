@@ -0,0 +1,178 @@
+package com.alexkasko.tasks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent set of primitive longs, used for suspension checks without boxing.
+ * Elements are distributed between lock-striped open addressing hash tables.
+ * Lookups and removals on empty set cost a single volatile read. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+class ConcurrentLongHashSet {
+    private static final int STRIPES_COUNT = 16;
+    private static final int STRIPES_MASK = STRIPES_COUNT - 1;
+
+    private final Stripe[] stripes;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructor
+     */
+    ConcurrentLongHashSet() {
+        this.stripes = new Stripe[STRIPES_COUNT];
+        for(int i = 0; i < STRIPES_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Adds value to set
+     *
+     * @param value value to add
+     * @return {@code false} if value was already in set, {@code true} otherwise
+     */
+    boolean add(long value) {
+        int hash = hash(value);
+        Stripe st = stripes[hash & STRIPES_MASK];
+        boolean res;
+        synchronized (st) {
+            res = st.add(value, hash >>> 4);
+        }
+        if(res) size.incrementAndGet();
+        return res;
+    }
+
+    /**
+     * Removes value from set
+     *
+     * @param value value to remove
+     * @return {@code true} if value was in set, {@code false} otherwise
+     */
+    boolean remove(long value) {
+        if(0 == size.get()) return false;
+        int hash = hash(value);
+        Stripe st = stripes[hash & STRIPES_MASK];
+        boolean res;
+        synchronized (st) {
+            res = st.remove(value, hash >>> 4);
+        }
+        if(res) size.decrementAndGet();
+        return res;
+    }
+
+    /**
+     * Checks whether value is in set
+     *
+     * @param value value to check
+     * @return whether value is in set
+     */
+    boolean contains(long value) {
+        if(0 == size.get()) return false;
+        int hash = hash(value);
+        Stripe st = stripes[hash & STRIPES_MASK];
+        synchronized (st) {
+            return st.contains(value, hash >>> 4);
+        }
+    }
+
+    /**
+     * Returns number of elements in set
+     *
+     * @return number of elements in set
+     */
+    int size() {
+        return size.get();
+    }
+
+    // murmur3 finalizer
+    private static int hash(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    // linear probing hash table, not thread-safe
+    private static class Stripe {
+        private static final byte EMPTY = 0;
+        private static final byte FULL = 1;
+        private static final byte REMOVED = 2;
+        private static final int INITIAL_CAPACITY = 8;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private byte[] states = new byte[INITIAL_CAPACITY];
+        private int size = 0;
+        // full and removed slots
+        private int used = 0;
+
+        boolean add(long key, int hash) {
+            int mask = keys.length - 1;
+            int removed = -1;
+            for(int i = hash & mask; ; i = (i + 1) & mask) {
+                byte state = states[i];
+                if(FULL == state) {
+                    if(key == keys[i]) return false;
+                } else if(REMOVED == state) {
+                    if(-1 == removed) removed = i;
+                } else {
+                    int slot = i;
+                    if(-1 != removed) {
+                        slot = removed;
+                    } else {
+                        used += 1;
+                    }
+                    keys[slot] = key;
+                    states[slot] = FULL;
+                    size += 1;
+                    if(used * 4 > keys.length * 3) rehash();
+                    return true;
+                }
+            }
+        }
+
+        boolean remove(long key, int hash) {
+            int ind = find(key, hash);
+            if(-1 == ind) return false;
+            states[ind] = REMOVED;
+            size -= 1;
+            return true;
+        }
+
+        boolean contains(long key, int hash) {
+            return -1 != find(key, hash);
+        }
+
+        private int find(long key, int hash) {
+            int mask = keys.length - 1;
+            for(int i = hash & mask; ; i = (i + 1) & mask) {
+                byte state = states[i];
+                if(EMPTY == state) return -1;
+                if(FULL == state && key == keys[i]) return i;
+            }
+        }
+
+        // drops removed slots, grows table if it's more than half full
+        private void rehash() {
+            long[] oldKeys = keys;
+            byte[] oldStates = states;
+            int capacity = size * 2 > oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+            keys = new long[capacity];
+            states = new byte[capacity];
+            used = size;
+            int mask = capacity - 1;
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(FULL != oldStates[i]) continue;
+                long key = oldKeys[i];
+                int j = (hash(key) >>> 4) & mask;
+                while(EMPTY != states[j]) j = (j + 1) & mask;
+                keys[j] = key;
+                states[j] = FULL;
+            }
+        }
+    }
+}
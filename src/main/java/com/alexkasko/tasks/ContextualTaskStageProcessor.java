@@ -0,0 +1,25 @@
+package com.alexkasko.tasks;
+
+/**
+ * {@link TaskStageProcessor} extension, that receives per-execution {@link TaskContext}
+ * instead of task id. Context allows cheap suspension checks and provides stage metadata.
+ * {@link TaskEngine} calls {@link #process(TaskContext)} for such processors,
+ * {@link #process(long)} is not called by engine.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see TaskContext
+ */
+public interface ContextualTaskStageProcessor extends TaskStageProcessor {
+    /**
+     * Some business oriented work to do on task.
+     * {@link TaskContext#checkSuspended()} method should be called periodically,
+     * {@link TaskSuspendedException} must be thrown on successful suspension check
+     *
+     * @param context task execution context
+     * @throws TaskSuspendedException task will rolled back to last completed stage and switched into 'suspended' status
+     * @throws Exception task will rolled back to last completed stage and switched into 'error' status
+     */
+    void process(TaskContext context) throws Exception;
+}
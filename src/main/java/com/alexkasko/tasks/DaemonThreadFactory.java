@@ -0,0 +1,34 @@
+package com.alexkasko.tasks;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for named daemon threads used by engine internals
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+class DaemonThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Constructor
+     *
+     * @param prefix thread name prefix
+     */
+    DaemonThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread th = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+        th.setDaemon(true);
+        return th;
+    }
+}
@@ -0,0 +1,281 @@
+package com.alexkasko.tasks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Built-in lock-free {@link TaskEngineMetrics} implementation. Collects {@link LatencyHistogram}s
+ * (in nanoseconds) for queue wait, each {@link TaskManager} method and per processor id
+ * for stage processing, listeners and rate limit throttling, throughput counters and in-flight gauges.
+ * Per processor metrics are created on first use. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngineMetrics
+ */
+public class HistogramTaskEngineMetrics implements TaskEngineMetrics {
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram[] managerCalls;
+    private final AtomicLong managerErrors = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConcurrentMap<String, ProcessorMetrics> processors = new ConcurrentHashMap<String, ProcessorMetrics>();
+
+    /**
+     * Constructor
+     */
+    public HistogramTaskEngineMetrics() {
+        ManagerCall[] calls = ManagerCall.values();
+        this.managerCalls = new LatencyHistogram[calls.length];
+        for(int i = 0; i < calls.length; i++) {
+            managerCalls[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskDispatched(long taskId) {
+        dispatched.incrementAndGet();
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskStarted(long taskId, long queueWaitNanos) {
+        queueWait.record(queueWaitNanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void taskFinished(long taskId) {
+        finished.incrementAndGet();
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageStarted(long taskId, String processorId) {
+        processor(processorId).inFlight.incrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageFinished(long taskId, String processorId, long processNanos, boolean success) {
+        ProcessorMetrics pm = processor(processorId);
+        pm.inFlight.decrementAndGet();
+        pm.processing.record(processNanos);
+        if(success) {
+            pm.succeeded.incrementAndGet();
+        } else {
+            pm.failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stageThrottled(long taskId, String processorId, long delayNanos) {
+        processor(processorId).throttled.record(delayNanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void listenersFired(long taskId, String processorId, long nanos) {
+        processor(processorId).listeners.record(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void managerCalled(ManagerCall call, long nanos, boolean success) {
+        managerCalls[call.ordinal()].record(nanos);
+        if(!success) managerErrors.incrementAndGet();
+    }
+
+    /**
+     * Returns time between sending tasks to executor and their execution start
+     *
+     * @return queue wait histogram
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns time spent in specified {@link TaskManager} method
+     *
+     * @param call manager method
+     * @return manager call histogram
+     */
+    public LatencyHistogram getManagerCallTime(ManagerCall call) {
+        if(null == call) throw new TaskEngineException("Provided call is null");
+        return managerCalls[call.ordinal()];
+    }
+
+    /**
+     * Returns number of failed {@link TaskManager} calls
+     *
+     * @return number of failed manager calls
+     */
+    public long getManagerErrors() {
+        return managerErrors.get();
+    }
+
+    /**
+     * Returns number of tasks sent to executor
+     *
+     * @return number of dispatched tasks
+     */
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * Returns number of finished tasks
+     *
+     * @return number of finished tasks
+     */
+    public long getFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Returns number of tasks sent to executor and not finished yet
+     *
+     * @return number of tasks in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns ids of processors, that were called at least once
+     *
+     * @return processor ids
+     */
+    public Collection<String> getProcessorIds() {
+        return Collections.unmodifiableSet(processors.keySet());
+    }
+
+    /**
+     * Returns metrics of specified processor
+     *
+     * @param processorId processor id
+     * @return processor metrics, {@code null} if processor wasn't called
+     */
+    public ProcessorMetrics getProcessorMetrics(String processorId) {
+        return processors.get(processorId);
+    }
+
+    private ProcessorMetrics processor(String processorId) {
+        ProcessorMetrics pm = processors.get(processorId);
+        if(null != pm) return pm;
+        ProcessorMetrics created = new ProcessorMetrics();
+        ProcessorMetrics existed = processors.putIfAbsent(processorId, created);
+        return null != existed ? existed : created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "HistogramTaskEngineMetrics{dispatched=" + getDispatched() + ", finished=" + getFinished() +
+                ", inFlight=" + getInFlight() + ", queueWait=" + queueWait + ", processors=" + processors + "}";
+    }
+
+    /**
+     * Metrics of single stage processor, thread-safe
+     */
+    public static class ProcessorMetrics {
+        private final LatencyHistogram processing = new LatencyHistogram();
+        private final LatencyHistogram listeners = new LatencyHistogram();
+        private final LatencyHistogram throttled = new LatencyHistogram();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * Returns time spent in processor
+         *
+         * @return processing time histogram
+         */
+        public LatencyHistogram getProcessingTime() {
+            return processing;
+        }
+
+        /**
+         * Returns time spent in before and after listeners
+         *
+         * @return listeners time histogram
+         */
+        public LatencyHistogram getListenersTime() {
+            return listeners;
+        }
+
+        /**
+         * Returns time, for which stage starts were deferred by rate limit,
+         * only throttled stage starts are recorded
+         *
+         * @return throttled time histogram
+         */
+        public LatencyHistogram getThrottledTime() {
+            return throttled;
+        }
+
+        /**
+         * Returns number of successfully processed stages
+         *
+         * @return number of successfully processed stages
+         */
+        public long getSucceeded() {
+            return succeeded.get();
+        }
+
+        /**
+         * Returns number of stages, failed with error or suspension
+         *
+         * @return number of failed stages
+         */
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Returns number of stages being processed now
+         *
+         * @return number of stages in flight
+         */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "ProcessorMetrics{succeeded=" + getSucceeded() + ", failed=" + getFailed() +
+                    ", inFlight=" + getInFlight() + ", processing=" + processing + "}";
+        }
+    }
+}
@@ -0,0 +1,898 @@
+package com.alexkasko.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plain JDBC {@link TaskManager} for multiple engine nodes working with the same tasks table.
+ * Each node claims bounded batches of tasks taking leases on them: claimed rows get 'processing' status,
+ * node id as lease owner and lease expiry time. Leases of running tasks are renewed by background
+ * heartbeats with batched updates, tasks with expired leases (e.g. after node crash) are reclaimed
+ * by other nodes together with new tasks. All updates are guarded by lease owner, so node that lost
+ * lease cannot overwrite task state.
+ *
+ * Tasks are claimed using {@code SELECT ... FOR UPDATE SKIP LOCKED} on databases supporting it
+ * (PostgreSQL 9.5+, MySQL 8+), so nodes don't block each other, on PostgreSQL claim and load are done
+ * with single {@code UPDATE ... RETURNING} statement. On H2 single set-based update is used and claimed rows
+ * are read back by lease. On other databases optimistic claiming is used: candidates are selected without locks
+ * and claimed with conditional updates, candidates taken by other nodes are skipped.
+ *
+ * Tasks table must have lease owner ({@code varchar}) and lease expiry ({@code bigint}, epoch millis)
+ * columns, lease expiry is compared using nodes clocks, so lease duration must be much longer than
+ * possible clock skew between nodes. {@link #close()} should be called on application shutdown
+ * after {@link TaskEngine#shutdown(long)}. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see BoundedTaskManager
+ */
+public class JdbcTaskManager<T extends Task> implements BoundedTaskManager<T>, TaskTransitionManager<T> {
+    private static final Log logger = LogFactory.getLog(JdbcTaskManager.class);
+    // max number of bind parameters in single 'in' list
+    private static final int IN_CHUNK_SIZE = 100;
+    // optimistic claim selects more candidates, than required, to skip ones claimed by other nodes
+    private static final int CANDIDATES_FACTOR = 4;
+
+    private final DataSource dataSource;
+    private final TaskMapper<? extends T> mapper;
+    private final String nodeId;
+    private final long leaseMillis;
+    private final int batchSize;
+    private final String processingStatus;
+    private final String successStatus;
+    private final String suspendedStatus;
+    private final String errorStatus;
+    private final LeaseListener leaseListener;
+    private volatile ClaimMode mode;
+    // lease expiry written on claim, strictly increasing, so claimed rows may be read back by it
+    private final AtomicLong lastClaimExpiry = new AtomicLong();
+    // ids of tasks claimed by this node and not finished yet
+    private final Set<Long> leased = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final ScheduledFuture<?> heartbeatFuture;
+    // sql
+    private final String idColumn;
+    private final String selectLockedSql;
+    private final String selectCandidatesSql;
+    private final String claimSql;
+    private final String claimCandidateSql;
+    private final String claimReturningSql;
+    private final String claimSubquerySql;
+    private final String loadClaimedSql;
+    private final String loadSql;
+    private final String renewSql;
+    private final String updateStageSql;
+    private final String updateStatusSql;
+    private final String updateStageAndStatusSql;
+
+    /**
+     * Constructor
+     *
+     * @param builder builder instance
+     * @throws TaskEngineException on invalid input
+     */
+    protected JdbcTaskManager(Builder<T> builder) throws TaskEngineException {
+        if(null == builder) throw new TaskEngineException("Provided builder is null");
+        this.dataSource = builder.dataSource;
+        this.mapper = builder.mapper;
+        this.nodeId = builder.nodeId;
+        this.leaseMillis = builder.leaseMillis;
+        this.batchSize = builder.batchSize;
+        this.processingStatus = builder.processingStatus;
+        this.successStatus = builder.successStatus;
+        this.suspendedStatus = builder.suspendedStatus;
+        this.errorStatus = builder.errorStatus;
+        this.leaseListener = builder.leaseListener;
+        this.mode = builder.mode;
+        this.idColumn = builder.idColumn;
+        String t = builder.table;
+        String id = builder.idColumn;
+        String stage = builder.stageColumn;
+        String status = builder.statusColumn;
+        String owner = builder.leaseOwnerColumn;
+        String expiry = builder.leaseExpiryColumn;
+        String condition = null != builder.claimableCondition ? builder.claimableCondition :
+                "(" + status + " = 'NORMAL' and " + stage + " = 'CREATED') or " + status + " = 'RESUMED'";
+        // new tasks or tasks with expired leases, parameters: processing status, now
+        String claimable = "((" + condition + ") or (" + status + " = ? and " + expiry + " < ?))";
+        String lease = status + " = ?, " + owner + " = ?, " + expiry + " = ?";
+        this.selectLockedSql = "select * from " + t + " where " + claimable + " order by " + id + " limit ? for update skip locked";
+        this.selectCandidatesSql = "select " + id + " from " + t + " where " + claimable + " order by " + id + " limit ?";
+        this.claimSql = "update " + t + " set " + lease + " where " + id + " = ?";
+        this.claimCandidateSql = "update " + t + " set " + lease + " where " + id + " = ? and " + claimable;
+        this.claimReturningSql = "update " + t + " set " + lease + " where " + id + " in (" + selectCandidatesSql +
+                " for update skip locked) returning *";
+        // claimable condition is rechecked on updated rows, they may be claimed concurrently by other node
+        this.claimSubquerySql = "update " + t + " set " + lease + " where " + id + " in (" + selectCandidatesSql + ") and " + claimable;
+        this.loadClaimedSql = "select * from " + t + " where " + owner + " = ? and " + expiry + " = ? and " + status + " = ?";
+        this.loadSql = "select * from " + t + " where " + owner + " = ? and " + id + " in ";
+        this.renewSql = "update " + t + " set " + expiry + " = ? where " + id + " = ? and " + owner + " = ? and " + status + " = ?";
+        String guard = " where " + id + " = ? and " + owner + " = ? and " + status + " = ?";
+        this.updateStageSql = "update " + t + " set " + stage + " = ?" + guard;
+        String release = status + " = ?, " + owner + " = null, " + expiry + " = null";
+        this.updateStatusSql = "update " + t + " set " + release + guard;
+        this.updateStageAndStatusSql = "update " + t + " set " + stage + " = ?, " + release + guard;
+        if(null != builder.scheduler) {
+            this.scheduler = builder.scheduler;
+            this.ownScheduler = false;
+        } else {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("task-engine-lease"));
+            this.ownScheduler = true;
+        }
+        long period = Math.max(1, leaseMillis / 3);
+        this.heartbeatFuture = scheduler.scheduleWithFixedDelay(new HeartbeatRunnable(), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builder instance factory method
+     *
+     * @param dataSource data source
+     * @param mapper mapper for tasks table rows
+     * @param <T> task type
+     * @return {@link Builder} builder for manager
+     */
+    public static <T extends Task> Builder<T> builder(DataSource dataSource, TaskMapper<? extends T> mapper) {
+        return new Builder<T>(dataSource, mapper);
+    }
+
+    /**
+     * Claims and loads batch of tasks, batch size is set in builder
+     *
+     * @return collection of tasks to run
+     */
+    @Override
+    public Collection<? extends T> markProcessingAndLoad() {
+        return markProcessingAndLoad(batchSize);
+    }
+
+    /**
+     * Claims and loads no more than {@code limit} tasks, taking leases on them
+     *
+     * @param limit max number of tasks to return
+     * @return collection of tasks to run
+     */
+    @Override
+    public Collection<? extends T> markProcessingAndLoad(int limit) {
+        if(limit <= 0) throw new TaskEngineException("Provided limit: [" + limit + "] must be positive");
+        Connection conn = null;
+        boolean autoCommit = true;
+        try {
+            conn = dataSource.getConnection();
+            autoCommit = conn.getAutoCommit();
+            if(ClaimMode.AUTO == mode) mode = detectMode(conn);
+            List<T> res = claim(conn, limit);
+            for(T task : res) {
+                leased.add(task.getId());
+            }
+            return res;
+        } catch(SQLException e) {
+            throw new TaskEngineException("Error claiming tasks, node: [" + nodeId + "]", e);
+        } finally {
+            close(conn, autoCommit);
+        }
+    }
+
+    /**
+     * Updates task stage
+     *
+     * @param taskId task id
+     * @param stage new stage
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStage(long taskId, String stage) {
+        update(updateStageSql, taskId, stage);
+    }
+
+    /**
+     * Updates task stage to the next stage start, completed stage is not written
+     *
+     * @param taskId task id
+     * @param completedStage completed name of the just finished stage
+     * @param startedStage intermediate name of the next stage
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStageTransition(long taskId, String completedStage, String startedStage) {
+        update(updateStageSql, taskId, startedStage);
+    }
+
+    /**
+     * Updates task stage and status, releases lease
+     *
+     * @param taskId task id
+     * @param completedStage completed name of the last stage
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStageAndStatusSuccess(long taskId, String completedStage) {
+        release(updateStageAndStatusSql, taskId, completedStage, successStatus);
+    }
+
+    /**
+     * Updates task status, releases lease
+     *
+     * @param taskId task id
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStatusSuccess(long taskId) {
+        release(updateStatusSql, taskId, null, successStatus);
+    }
+
+    /**
+     * Updates task status, releases lease
+     *
+     * @param taskId task id
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        release(updateStatusSql, taskId, null, suspendedStatus);
+    }
+
+    /**
+     * Updates task stage and status, releases lease
+     *
+     * @param taskId task id
+     * @param lastCompletedStage name of last completed stage
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStageAndStatusSuspended(long taskId, String lastCompletedStage) {
+        release(updateStageAndStatusSql, taskId, lastCompletedStage, suspendedStatus);
+    }
+
+    /**
+     * Updates task stage and status, releases lease
+     *
+     * @param taskId task id
+     * @param e exception
+     * @param lastCompletedStage name of last completed stage
+     * @throws TaskEngineException if lease was lost
+     */
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        release(updateStageAndStatusSql, taskId, lastCompletedStage, errorStatus);
+    }
+
+    /**
+     * Renews leases of all tasks claimed by this node using batched updates, called periodically
+     * from heartbeat thread. Tasks, which leases were lost, are reported to {@link #onLeaseLost(long)}.
+     *
+     * @return number of renewed leases
+     */
+    public int renewLeases() {
+        if(leased.isEmpty()) return 0;
+        List<Long> ids = new ArrayList<Long>(leased);
+        long expiry = System.currentTimeMillis() + leaseMillis;
+        int renewed = 0;
+        Connection conn = null;
+        boolean autoCommit = true;
+        try {
+            conn = dataSource.getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement(renewSql);
+            try {
+                for(int i = 0; i < ids.size(); i += IN_CHUNK_SIZE) {
+                    List<Long> chunk = ids.subList(i, Math.min(i + IN_CHUNK_SIZE, ids.size()));
+                    for(Long id : chunk) {
+                        ps.setLong(1, expiry);
+                        ps.setLong(2, id);
+                        ps.setString(3, nodeId);
+                        ps.setString(4, processingStatus);
+                        ps.addBatch();
+                    }
+                    int[] counts = ps.executeBatch();
+                    conn.commit();
+                    for(int j = 0; j < counts.length; j++) {
+                        if(updated(counts[j])) {
+                            renewed += 1;
+                        } else if(leased.remove(chunk.get(j))) {
+                            onLeaseLost(chunk.get(j));
+                        }
+                    }
+                }
+            } finally {
+                ps.close();
+            }
+            return renewed;
+        } catch(SQLException e) {
+            throw new TaskEngineException("Error renewing leases, node: [" + nodeId + "]", e);
+        } finally {
+            close(conn, autoCommit);
+        }
+    }
+
+    /**
+     * Stops lease heartbeats. Shuts down scheduler if it was created by this instance.
+     * Leases of tasks left running will expire and tasks will be reclaimed by other nodes.
+     */
+    public void close() {
+        heartbeatFuture.cancel(false);
+        if(ownScheduler) scheduler.shutdown();
+    }
+
+    /**
+     * Returns id of this node used as lease owner
+     *
+     * @return node id
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns number of tasks leased by this node
+     *
+     * @return number of leased tasks
+     */
+    public int leasedCount() {
+        return leased.size();
+    }
+
+    /**
+     * Called when task lease was found taken by other node (or task was changed externally)
+     * during renewal. Logs warning and notifies {@link LeaseListener} set in builder.
+     *
+     * @param taskId task id
+     */
+    protected void onLeaseLost(long taskId) {
+        logger.warn("Lease lost for task, id: [" + taskId + "], node: [" + nodeId + "]");
+        if(null != leaseListener) leaseListener.leaseLost(taskId);
+    }
+
+    private List<T> claim(Connection conn, int limit) throws SQLException {
+        switch(mode) {
+            case RETURNING: return claimReturning(conn, limit);
+            case UPDATE_AND_READ: return claimAndRead(conn, limit);
+            case SKIP_LOCKED: return claimLocked(conn, limit);
+            default: return claimOptimistic(conn, limit);
+        }
+    }
+
+    private List<T> claimReturning(Connection conn, int limit) throws SQLException {
+        conn.setAutoCommit(true);
+        long now = System.currentTimeMillis();
+        List<T> res = new ArrayList<T>();
+        PreparedStatement ps = conn.prepareStatement(claimReturningSql);
+        try {
+            setLease(ps, claimExpiry(now));
+            setClaimable(ps, 4, now);
+            ps.setInt(6, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                res.add(mapRow(rs));
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        return res;
+    }
+
+    private List<T> claimAndRead(Connection conn, int limit) throws SQLException {
+        conn.setAutoCommit(true);
+        long now = System.currentTimeMillis();
+        long expiry = claimExpiry(now);
+        PreparedStatement ups = conn.prepareStatement(claimSubquerySql);
+        int updated;
+        try {
+            setLease(ups, expiry);
+            setClaimable(ups, 4, now);
+            ups.setInt(6, limit);
+            setClaimable(ups, 7, now);
+            updated = ups.executeUpdate();
+        } finally {
+            ups.close();
+        }
+        if(0 == updated) return Collections.emptyList();
+        List<T> res = new ArrayList<T>(updated);
+        PreparedStatement ps = conn.prepareStatement(loadClaimedSql);
+        try {
+            ps.setString(1, nodeId);
+            ps.setLong(2, expiry);
+            ps.setString(3, processingStatus);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                // lease of running task may be renewed with the same expiry
+                if(leased.contains(rs.getLong(idColumn))) continue;
+                res.add(mapRow(rs));
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        return res;
+    }
+
+    private List<T> claimLocked(Connection conn, int limit) throws SQLException {
+        conn.setAutoCommit(false);
+        long now = System.currentTimeMillis();
+        List<T> res = new ArrayList<T>();
+        List<Long> ids = new ArrayList<Long>();
+        PreparedStatement ps = conn.prepareStatement(selectLockedSql);
+        try {
+            ps.setString(1, processingStatus);
+            ps.setLong(2, now);
+            ps.setInt(3, limit);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                ids.add(rs.getLong(idColumn));
+                res.add(mapRow(rs));
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        if(!ids.isEmpty()) {
+            PreparedStatement ups = conn.prepareStatement(claimSql);
+            try {
+                long expiry = claimExpiry(now);
+                for(Long id : ids) {
+                    setLease(ups, expiry);
+                    ups.setLong(4, id);
+                    ups.addBatch();
+                }
+                ups.executeBatch();
+            } finally {
+                ups.close();
+            }
+        }
+        conn.commit();
+        return res;
+    }
+
+    private List<T> claimOptimistic(Connection conn, int limit) throws SQLException {
+        conn.setAutoCommit(true);
+        long now = System.currentTimeMillis();
+        List<Long> candidates = new ArrayList<Long>();
+        PreparedStatement ps = conn.prepareStatement(selectCandidatesSql);
+        try {
+            ps.setString(1, processingStatus);
+            ps.setLong(2, now);
+            ps.setInt(3, limit * CANDIDATES_FACTOR);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) {
+                candidates.add(rs.getLong(1));
+            }
+            rs.close();
+        } finally {
+            ps.close();
+        }
+        if(candidates.isEmpty()) return Collections.emptyList();
+        // nodes start from different candidates, so they rarely conflict
+        Collections.shuffle(candidates);
+        List<Long> claimed = new ArrayList<Long>();
+        long expiry = claimExpiry(now);
+        PreparedStatement ups = conn.prepareStatement(claimCandidateSql);
+        try {
+            int from = 0;
+            while(claimed.size() < limit && from < candidates.size()) {
+                List<Long> chunk = candidates.subList(from, Math.min(from + limit - claimed.size(), candidates.size()));
+                from += chunk.size();
+                for(Long id : chunk) {
+                    setLease(ups, expiry);
+                    ups.setLong(4, id);
+                    setClaimable(ups, 5, now);
+                    ups.addBatch();
+                }
+                int[] counts = ups.executeBatch();
+                for(int i = 0; i < counts.length; i++) {
+                    if(updated(counts[i])) claimed.add(chunk.get(i));
+                }
+            }
+        } finally {
+            ups.close();
+        }
+        return load(conn, claimed);
+    }
+
+    private List<T> load(Connection conn, List<Long> ids) throws SQLException {
+        List<T> res = new ArrayList<T>(ids.size());
+        for(int i = 0; i < ids.size(); i += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(i, Math.min(i + IN_CHUNK_SIZE, ids.size()));
+            StringBuilder sql = new StringBuilder(loadSql).append("(");
+            for(int j = 0; j < chunk.size(); j++) {
+                sql.append(j > 0 ? ", ?" : "?");
+            }
+            sql.append(")");
+            PreparedStatement ps = conn.prepareStatement(sql.toString());
+            try {
+                ps.setString(1, nodeId);
+                for(int j = 0; j < chunk.size(); j++) {
+                    ps.setLong(j + 2, chunk.get(j));
+                }
+                ResultSet rs = ps.executeQuery();
+                while(rs.next()) {
+                    res.add(mapRow(rs));
+                }
+                rs.close();
+            } finally {
+                ps.close();
+            }
+        }
+        return res;
+    }
+
+    private T mapRow(ResultSet rs) throws SQLException {
+        T res = mapper.map(rs);
+        if(null == res) throw new TaskEngineException("Null task returned by mapper: [" + mapper + "]");
+        return res;
+    }
+
+    private long claimExpiry(long now) {
+        for(;;) {
+            long last = lastClaimExpiry.get();
+            long res = Math.max(now + leaseMillis, last + 1);
+            if(lastClaimExpiry.compareAndSet(last, res)) return res;
+        }
+    }
+
+    private void setLease(PreparedStatement ps, long expiry) throws SQLException {
+        ps.setString(1, processingStatus);
+        ps.setString(2, nodeId);
+        ps.setLong(3, expiry);
+    }
+
+    // parameters of reclaim part of claimable condition
+    private void setClaimable(PreparedStatement ps, int index, long now) throws SQLException {
+        ps.setString(index, processingStatus);
+        ps.setLong(index + 1, now);
+    }
+
+    private void update(String sql, long taskId, String stage) {
+        if(1 != execute(sql, taskId, stage, null)) throw new TaskEngineException(
+                "Lease lost for task, id: [" + taskId + "], node: [" + nodeId + "], stage: [" + stage + "] was not written");
+    }
+
+    private void release(String sql, long taskId, String stage, String status) {
+        leased.remove(taskId);
+        if(1 != execute(sql, taskId, stage, status)) throw new TaskEngineException(
+                "Lease lost for task, id: [" + taskId + "], node: [" + nodeId + "], status: [" + status + "] was not written");
+    }
+
+    private int execute(String sql, long taskId, String stage, String status) {
+        Connection conn = null;
+        boolean autoCommit = true;
+        try {
+            conn = dataSource.getConnection();
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(true);
+            PreparedStatement ps = conn.prepareStatement(sql);
+            try {
+                int ind = 1;
+                if(null != stage) ps.setString(ind++, stage);
+                if(null != status) ps.setString(ind++, status);
+                ps.setLong(ind++, taskId);
+                ps.setString(ind++, nodeId);
+                ps.setString(ind, processingStatus);
+                return ps.executeUpdate();
+            } finally {
+                ps.close();
+            }
+        } catch(SQLException e) {
+            throw new TaskEngineException("Error updating task, id: [" + taskId + "], node: [" + nodeId + "]", e);
+        } finally {
+            close(conn, autoCommit);
+        }
+    }
+
+    // some drivers don't report counts for batches, claimed rows are checked by owner on load
+    private static boolean updated(int count) {
+        return count > 0 || Statement.SUCCESS_NO_INFO == count;
+    }
+
+    private static ClaimMode detectMode(Connection conn) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        String product = md.getDatabaseProductName();
+        int major = md.getDatabaseMajorVersion();
+        int minor = md.getDatabaseMinorVersion();
+        final ClaimMode res;
+        if("PostgreSQL".equals(product) && (major > 9 || (9 == major && minor >= 5))) res = ClaimMode.RETURNING;
+        else if("MySQL".equals(product) && major >= 8) res = ClaimMode.SKIP_LOCKED;
+        else if("H2".equals(product)) res = ClaimMode.UPDATE_AND_READ;
+        else res = ClaimMode.OPTIMISTIC;
+        logger.info("Database: [" + product + " " + major + "." + minor + "], claim mode: [" + res + "]");
+        return res;
+    }
+
+    // rolls back transaction left by any failure (no-op after commit) releasing row locks,
+    // restores auto-commit mode before returning connection to pool
+    private static void close(Connection conn, boolean autoCommit) {
+        if(null == conn) return;
+        try {
+            if(!conn.getAutoCommit()) conn.rollback();
+            if(conn.getAutoCommit() != autoCommit) conn.setAutoCommit(autoCommit);
+        } catch(SQLException e) {
+            logger.warn("Error resetting connection", e);
+        }
+        try {
+            conn.close();
+        } catch(SQLException e) {
+            logger.warn("Error closing connection", e);
+        }
+    }
+
+    /**
+     * Maps tasks table row into task instance
+     *
+     * @param <T> task type
+     */
+    public interface TaskMapper<T extends Task> {
+        /**
+         * Maps current row
+         *
+         * @param rs result set of {@code select *} query, positioned on the row to map
+         * @return task instance
+         * @throws SQLException on database error
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Listener for lost leases, called from heartbeat thread. Task, which lease was lost,
+     * may be still running on this node, its updates will fail, so it should be suspended in engine
+     * using {@link TaskEngine#suspend(long)}.
+     */
+    public interface LeaseListener {
+        /**
+         * Called when task lease was found taken by other node during renewal
+         *
+         * @param taskId task id
+         */
+        void leaseLost(long taskId);
+    }
+
+    /**
+     * Tasks claiming modes
+     */
+    public enum ClaimMode {
+        /**
+         * Detected on first claim: {@link #RETURNING} for PostgreSQL 9.5+, {@link #SKIP_LOCKED} for MySQL 8+,
+         * {@link #UPDATE_AND_READ} for H2, {@link #OPTIMISTIC} otherwise
+         */
+        AUTO,
+        /**
+         * Single {@code UPDATE ... WHERE id IN (SELECT ... FOR UPDATE SKIP LOCKED) RETURNING *} statement,
+         * claims and loads tasks in one round trip
+         */
+        RETURNING,
+        /**
+         * Single {@code UPDATE ... WHERE id IN (SELECT ... LIMIT ?)} statement, claimed rows are read back
+         * by node and unique lease expiry, two round trips regardless of batch size
+         */
+        UPDATE_AND_READ,
+        /**
+         * {@code SELECT ... LIMIT ? FOR UPDATE SKIP LOCKED} and batched lease updates in single transaction
+         */
+        SKIP_LOCKED,
+        /**
+         * Candidates selected without locks, claimed using batched conditional updates
+         */
+        OPTIMISTIC
+    }
+
+    /**
+     * Builder class for {@link JdbcTaskManager}, not thread-safe
+     */
+    public static class Builder<T extends Task> {
+        private final DataSource dataSource;
+        private final TaskMapper<? extends T> mapper;
+        private String nodeId = defaultNodeId();
+        private long leaseMillis = 60000;
+        private int batchSize = 100;
+        private ClaimMode mode = ClaimMode.AUTO;
+        private String table = "tasks";
+        private String idColumn = "id";
+        private String stageColumn = "stage";
+        private String statusColumn = "status";
+        private String leaseOwnerColumn = "lease_owner";
+        private String leaseExpiryColumn = "lease_expiry";
+        // default is built from configured column names
+        private String claimableCondition;
+        private String processingStatus = "PROCESSING";
+        private String successStatus = "NORMAL";
+        private String suspendedStatus = "SUSPENDED";
+        private String errorStatus = "ERROR";
+        private ScheduledExecutorService scheduler;
+        private LeaseListener leaseListener;
+
+        /**
+         * Constructor, protected for inheritors
+         *
+         * @param dataSource data source
+         * @param mapper mapper for tasks table rows
+         */
+        protected Builder(DataSource dataSource, TaskMapper<? extends T> mapper) {
+            if(null == dataSource) throw new TaskEngineException("Provided dataSource is null");
+            if(null == mapper) throw new TaskEngineException("Provided mapper is null");
+            this.dataSource = dataSource;
+            this.mapper = mapper;
+        }
+
+        /**
+         * Sets lease owner id of this node, must be unique between nodes, default is generated from JVM name
+         *
+         * @param nodeId node id
+         * @return builder instance
+         */
+        public Builder<T> nodeId(String nodeId) {
+            if(null == nodeId) throw new TaskEngineException("Provided nodeId is null");
+            this.nodeId = nodeId;
+            return this;
+        }
+
+        /**
+         * Sets lease duration, leases are renewed every third of this duration, default is {@code 60000}
+         *
+         * @param leaseMillis lease duration
+         * @return builder instance
+         */
+        public Builder<T> leaseMillis(long leaseMillis) {
+            if(leaseMillis <= 0) throw new TaskEngineException("Provided leaseMillis: [" + leaseMillis + "] must be positive");
+            this.leaseMillis = leaseMillis;
+            return this;
+        }
+
+        /**
+         * Sets number of tasks claimed by {@link JdbcTaskManager#markProcessingAndLoad()}, default is {@code 100}
+         *
+         * @param batchSize claim batch size
+         * @return builder instance
+         */
+        public Builder<T> batchSize(int batchSize) {
+            if(batchSize <= 0) throw new TaskEngineException("Provided batchSize: [" + batchSize + "] must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets claiming mode, default is {@link ClaimMode#AUTO}
+         *
+         * @param mode claiming mode
+         * @return builder instance
+         */
+        public Builder<T> claimMode(ClaimMode mode) {
+            if(null == mode) throw new TaskEngineException("Provided mode is null");
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * Sets tasks table and column names, defaults are 'tasks', 'id', 'stage', 'status', 'lease_owner', 'lease_expiry'
+         *
+         * @param table tasks table name
+         * @param idColumn id column ({@code bigint})
+         * @param stageColumn stage column
+         * @param statusColumn status column
+         * @param leaseOwnerColumn lease owner column ({@code varchar})
+         * @param leaseExpiryColumn lease expiry column ({@code bigint}, epoch millis)
+         * @return builder instance
+         */
+        public Builder<T> table(String table, String idColumn, String stageColumn, String statusColumn,
+                                String leaseOwnerColumn, String leaseExpiryColumn) {
+            if(null == table) throw new TaskEngineException("Provided table is null");
+            if(null == idColumn) throw new TaskEngineException("Provided idColumn is null");
+            if(null == stageColumn) throw new TaskEngineException("Provided stageColumn is null");
+            if(null == statusColumn) throw new TaskEngineException("Provided statusColumn is null");
+            if(null == leaseOwnerColumn) throw new TaskEngineException("Provided leaseOwnerColumn is null");
+            if(null == leaseExpiryColumn) throw new TaskEngineException("Provided leaseExpiryColumn is null");
+            this.table = table;
+            this.idColumn = idColumn;
+            this.stageColumn = stageColumn;
+            this.statusColumn = statusColumn;
+            this.leaseOwnerColumn = leaseOwnerColumn;
+            this.leaseExpiryColumn = leaseExpiryColumn;
+            return this;
+        }
+
+        /**
+         * Sets SQL condition for tasks available for claiming (tasks with expired leases are reclaimed
+         * regardless of it), default is {@code (status = 'NORMAL' and stage = 'CREATED') or status = 'RESUMED'}
+         * with status and stage column names set by {@link #table(String, String, String, String, String, String)}
+         *
+         * @param condition SQL condition without bind parameters
+         * @return builder instance
+         */
+        public Builder<T> claimable(String condition) {
+            if(null == condition) throw new TaskEngineException("Provided condition is null");
+            this.claimableCondition = condition;
+            return this;
+        }
+
+        /**
+         * Sets status values, defaults are 'PROCESSING', 'NORMAL', 'SUSPENDED', 'ERROR'
+         *
+         * @param processing status of claimed tasks
+         * @param success status of successfully finished tasks
+         * @param suspended status of suspended tasks
+         * @param error status of failed tasks
+         * @return builder instance
+         */
+        public Builder<T> statuses(String processing, String success, String suspended, String error) {
+            if(null == processing) throw new TaskEngineException("Provided processing status is null");
+            if(null == success) throw new TaskEngineException("Provided success status is null");
+            if(null == suspended) throw new TaskEngineException("Provided suspended status is null");
+            if(null == error) throw new TaskEngineException("Provided error status is null");
+            this.processingStatus = processing;
+            this.successStatus = success;
+            this.suspendedStatus = suspended;
+            this.errorStatus = error;
+            return this;
+        }
+
+        /**
+         * Sets scheduler for lease heartbeats, if not set manager creates its own daemon thread
+         *
+         * @param scheduler scheduler, won't be shut down on {@link JdbcTaskManager#close()}
+         * @return builder instance
+         */
+        public Builder<T> scheduler(ScheduledExecutorService scheduler) {
+            if(null == scheduler) throw new TaskEngineException("Provided scheduler is null");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Sets listener for lost leases, if not set lost leases are only logged
+         *
+         * @param listener listener, usually suspends task in engine
+         * @return builder instance
+         */
+        public Builder<T> leaseListener(LeaseListener listener) {
+            if(null == listener) throw new TaskEngineException("Provided listener is null");
+            this.leaseListener = listener;
+            return this;
+        }
+
+        /**
+         * Creates manager instance and starts lease heartbeats
+         *
+         * @return manager instance
+         */
+        public JdbcTaskManager<T> build() {
+            return new JdbcTaskManager<T>(this);
+        }
+
+        private static String defaultNodeId() {
+            // 'pid@host' on most JVMs, random suffix keeps ids unique for managers in the same JVM
+            return ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+
+    private class HeartbeatRunnable implements Runnable {
+        @Override
+        public void run() {
+            try {
+                renewLeases();
+            } catch (Exception e) {
+                logger.error("Error renewing leases, node: [" + nodeId + "]", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.alexkasko.tasks;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with logarithmic buckets. Each power of two
+ * range is split into 8 linear sub-buckets, so recorded values are kept with 12.5% precision
+ * (values less than 8 are kept exactly). Percentiles are reported as the highest value of the bucket.
+ * Recording is wait-free except max tracking. Reads are not atomic across buckets,
+ * so snapshots taken during recording are approximate. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see HistogramTaskEngineMetrics
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKETS_MASK = SUB_BUCKETS_COUNT - 1;
+    // values up to Long.MAX_VALUE
+    private static final int BUCKETS_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records value, negative values are recorded as zero
+     *
+     * @param value value to record
+     */
+    public void record(long value) {
+        long val = value < 0 ? 0 : value;
+        buckets.incrementAndGet(bucketIndex(val));
+        count.incrementAndGet();
+        total.addAndGet(val);
+        long cur = max.get();
+        while(val > cur && !max.compareAndSet(cur, val)) {
+            cur = max.get();
+        }
+    }
+
+    /**
+     * Returns number of recorded values
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns sum of recorded values
+     *
+     * @return sum of recorded values
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns max recorded value
+     *
+     * @return max recorded value, zero if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns mean of recorded values
+     *
+     * @return mean of recorded values, zero if nothing was recorded
+     */
+    public double getMean() {
+        long cnt = count.get();
+        return 0 == cnt ? 0 : ((double) total.get()) / cnt;
+    }
+
+    /**
+     * Returns value at specified percentile
+     *
+     * @param percentile percentile in [0, 100] range
+     * @return highest value of the bucket containing specified percentile, zero if nothing was recorded
+     * @throws TaskEngineException on invalid percentile
+     */
+    public long getValueAtPercentile(double percentile) throws TaskEngineException {
+        if(!(percentile >= 0 && percentile <= 100)) throw new TaskEngineException(
+                "Provided percentile: [" + percentile + "] must be in [0, 100] range");
+        long cnt = 0;
+        long[] snapshot = new long[BUCKETS_COUNT];
+        for(int i = 0; i < BUCKETS_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            cnt += snapshot[i];
+        }
+        if(0 == cnt) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * cnt));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS_COUNT; i++) {
+            seen += snapshot[i];
+            if(seen >= rank) return Math.min(bucketHighestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int bucketIndex(long value) {
+        if(value < SUB_BUCKETS_COUNT) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & SUB_BUCKETS_MASK;
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_COUNT + sub;
+    }
+
+    static long bucketHighestValue(int index) {
+        if(index < SUB_BUCKETS_COUNT) return index;
+        int exp = index / SUB_BUCKETS_COUNT + SUB_BUCKET_BITS - 1;
+        long sub = index & SUB_BUCKETS_MASK;
+        long width = 1L << (exp - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS_COUNT + sub) << (exp - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount() + ", mean=" + getMean() + ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) + ", max=" + getMax() + "}";
+    }
+}
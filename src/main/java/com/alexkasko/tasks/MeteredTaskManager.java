@@ -0,0 +1,198 @@
+package com.alexkasko.tasks;
+
+import com.alexkasko.tasks.TaskEngineMetrics.ManagerCall;
+
+import java.util.Collection;
+
+/**
+ * {@link TaskManager} decorator, that reports time of each call to {@link TaskEngineMetrics}.
+ * Used by {@link TaskEngine} only when metrics are set. Coalesced, bounded and streaming operations
+ * must be called only if wrapped manager supports them. Returned cursors are wrapped to measure
+ * reads and closing. Thread-safe if wrapped manager is thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+class MeteredTaskManager<T extends Task> implements TaskTransitionManager<T>, BoundedTaskManager<T>, StreamingTaskManager<T> {
+    private final TaskManager<T> delegate;
+    private final TaskEngineMetrics metrics;
+
+    /**
+     * Constructor
+     *
+     * @param delegate wrapped tasks DAO
+     * @param metrics metrics to report to
+     */
+    MeteredTaskManager(TaskManager<T> delegate, TaskEngineMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Collection<? extends T> markProcessingAndLoad() {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Collection<? extends T> res = delegate.markProcessingAndLoad();
+            success = true;
+            return res;
+        } finally {
+            metrics.managerCalled(ManagerCall.MARK_PROCESSING_AND_LOAD, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<? extends T> markProcessingAndLoad(int limit) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Collection<? extends T> res = ((BoundedTaskManager<T>) delegate).markProcessingAndLoad(limit);
+            success = true;
+            return res;
+        } finally {
+            metrics.managerCalled(ManagerCall.MARK_PROCESSING_AND_LOAD, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TaskCursor<? extends T> openCursor() {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            TaskCursor<? extends T> res = ((StreamingTaskManager<T>) delegate).openCursor();
+            success = true;
+            return new MeteredCursor<T>(res, metrics);
+        } finally {
+            metrics.managerCalled(ManagerCall.OPEN_CURSOR, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void updateStage(long taskId, String stage) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.updateStage(taskId, stage);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STAGE, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateStageTransition(long taskId, String completedStage, String startedStage) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ((TaskTransitionManager<T>) delegate).updateStageTransition(taskId, completedStage, startedStage);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STAGE_TRANSITION, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateStageAndStatusSuccess(long taskId, String completedStage) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ((TaskTransitionManager<T>) delegate).updateStageAndStatusSuccess(taskId, completedStage);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STAGE_AND_STATUS_SUCCESS, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateStageAndStatusSuspended(long taskId, String lastCompletedStage) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ((TaskTransitionManager<T>) delegate).updateStageAndStatusSuspended(taskId, lastCompletedStage);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STAGE_AND_STATUS_SUSPENDED, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void updateStatusSuccess(long taskId) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.updateStatusSuccess(taskId);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STATUS_SUCCESS, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.updateStatusSuspended(taskId);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STATUS_SUSPENDED, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.updateStatusError(taskId, e, lastCompletedStage);
+            success = true;
+        } finally {
+            metrics.managerCalled(ManagerCall.UPDATE_STATUS_ERROR, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MeteredTaskManager{delegate=" + delegate + "}";
+    }
+
+    private static class MeteredCursor<T extends Task> implements TaskCursor<T> {
+        private final TaskCursor<? extends T> delegate;
+        private final TaskEngineMetrics metrics;
+
+        private MeteredCursor(TaskCursor<? extends T> delegate, TaskEngineMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public T next() {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                T res = delegate.next();
+                success = true;
+                return res;
+            } finally {
+                metrics.managerCalled(ManagerCall.CURSOR_NEXT, System.nanoTime() - start, success);
+            }
+        }
+
+        @Override
+        public void close() {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                delegate.close();
+                success = true;
+            } finally {
+                metrics.managerCalled(ManagerCall.CURSOR_CLOSE, System.nanoTime() - start, success);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.alexkasko.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Dispatcher thread, that calls {@link TaskEngine#fire()} in a loop. Re-polls immediately
+ * if fire was limited by engine capacity, waits min delay after non-empty fire and backs off
+ * exponentially up to max delay after empty fires. Wait is interrupted by {@link #wakeUp()} calls.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine#startPolling(long, long)
+ */
+class PollingDispatcher implements Runnable {
+    private static final Log logger = LogFactory.getLog(PollingDispatcher.class);
+
+    private final TaskEngine engine;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUpCondition = lock.newCondition();
+    // guarded by lock
+    private boolean wokenUp = false;
+    private volatile boolean stopped = false;
+    private final Thread thread;
+
+    /**
+     * Constructor
+     *
+     * @param engine engine to fire
+     * @param minDelayMillis delay after non-empty fire and initial backoff delay
+     * @param maxDelayMillis max backoff delay
+     */
+    PollingDispatcher(TaskEngine engine, long minDelayMillis, long maxDelayMillis) {
+        if(minDelayMillis <= 0) throw new TaskEngineException("Provided minDelayMillis: [" + minDelayMillis + "] must be positive");
+        if(maxDelayMillis < minDelayMillis) throw new TaskEngineException("Provided maxDelayMillis: [" + maxDelayMillis + "] " +
+                "must not be less than minDelayMillis: [" + minDelayMillis + "]");
+        this.engine = engine;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.thread = new DaemonThreadFactory("task-engine-dispatcher").newThread(this);
+    }
+
+    /**
+     * Starts dispatcher thread
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops dispatcher thread after current fire, doesn't wait for it
+     */
+    void stop() {
+        stopped = true;
+        wakeUp();
+    }
+
+    /**
+     * Interrupts current wait, fire will be called immediately
+     */
+    void wakeUp() {
+        lock.lock();
+        try {
+            wokenUp = true;
+            wakeUpCondition.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Polling loop
+     */
+    @Override
+    public void run() {
+        long backoff = minDelayNanos;
+        while(!stopped) {
+            int fired = 0;
+            try {
+                fired = engine.fire();
+            } catch (Exception e) {
+                logger.error("Error firing tasks", e);
+            }
+            long delay;
+            if(fired > 0) {
+                backoff = minDelayNanos;
+                // full batch, more tasks are waiting
+                if(engine.isBacklogged()) continue;
+                delay = minDelayNanos;
+            } else {
+                delay = backoff;
+                backoff = Math.min(backoff * 2, maxDelayNanos);
+            }
+            if(await(delay)) backoff = minDelayNanos;
+        }
+        logger.debug("Dispatcher stopped");
+    }
+
+    // returns whether wait was interrupted by wake up
+    private boolean await(long delayNanos) {
+        lock.lock();
+        try {
+            long left = delayNanos;
+            while(!wokenUp && left > 0) {
+                left = wakeUpCondition.awaitNanos(left);
+            }
+            boolean res = wokenUp;
+            wokenUp = false;
+            return res;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
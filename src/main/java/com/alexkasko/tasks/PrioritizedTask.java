@@ -0,0 +1,20 @@
+package com.alexkasko.tasks;
+
+/**
+ * {@link Task} extension with dispatch priority, used by {@link TaskEngine}
+ * if priority dispatch is enabled (see {@link TaskEngine.Builder#priorityDispatch(long)}).
+ * Tasks, that don't implement this interface, have priority {@code 0}.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ */
+public interface PrioritizedTask extends Task {
+    /**
+     * Returns task priority, tasks with higher priority are run first.
+     * Should be small number, each priority point is equivalent to aging period of waiting.
+     *
+     * @return task priority
+     */
+    int getPriority();
+}
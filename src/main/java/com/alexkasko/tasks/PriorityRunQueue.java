@@ -0,0 +1,89 @@
+package com.alexkasko.tasks;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Priority run queue in front of the executor. Each enqueued runnable sends to the executor a token,
+ * that runs the best runnable from the queue at the moment of execution, so executor's own FIFO order
+ * doesn't matter. Runnables are ordered by enqueue time reduced by priority multiplied by aging period,
+ * so waiting runnables are aged without re-sorting and low priority runnables don't starve. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine.Builder#priorityDispatch(long)
+ */
+class PriorityRunQueue {
+    private final Executor executor;
+    private final long agingNanos;
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<Entry>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Runnable token = new Runnable() {
+        @Override
+        public void run() {
+            Entry en = queue.poll();
+            if(null != en) en.runnable.run();
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param executor executor to run runnables in
+     * @param agingNanos waiting period equivalent to one priority point
+     */
+    PriorityRunQueue(Executor executor, long agingNanos) {
+        this.executor = executor;
+        this.agingNanos = agingNanos;
+    }
+
+    /**
+     * Enqueues runnable and sends token to executor. If executor rejected token, but runnable was already
+     * taken by other token, the best waiting runnable, that may be left without token, is run in the calling thread.
+     *
+     * @param runnable runnable to run
+     * @param priority runnable priority, higher priority runnables are run first
+     * @throws RuntimeException if executor rejected token and runnable wasn't run
+     */
+    void execute(Runnable runnable, int priority) {
+        Entry en = new Entry(runnable, System.nanoTime() - priority * agingNanos, sequence.getAndIncrement());
+        queue.add(en);
+        try {
+            executor.execute(token);
+        } catch (RuntimeException e) {
+            if(queue.remove(en)) throw e;
+            // entry was taken by other token, so rejected token was the only one for some other entry
+            token.run();
+        }
+    }
+
+    /**
+     * Returns number of runnables waiting in queue
+     *
+     * @return number of waiting runnables
+     */
+    int size() {
+        return queue.size();
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final Runnable runnable;
+        private final long key;
+        private final long seq;
+
+        private Entry(Runnable runnable, long key, long seq) {
+            this.runnable = runnable;
+            this.key = key;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            // nano time may overflow
+            long diff = key - o.key;
+            if(0 != diff) return diff < 0 ? -1 : 1;
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
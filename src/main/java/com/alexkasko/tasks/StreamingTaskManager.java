@@ -0,0 +1,26 @@
+package com.alexkasko.tasks;
+
+/**
+ * {@link TaskManager} extension that returns tasks to run as a cursor instead of materialized collection.
+ * If manager implements this interface, {@link TaskEngine} uses it instead of
+ * {@link TaskManager#markProcessingAndLoad()}: cursor is read task by task and in capacity-aware mode
+ * (see {@link TaskEngine.Builder#capacity(int)}) reading is stopped when there are no free slots,
+ * so memory used by fire stays bounded regardless of backlog size. Cursor is closed before fire returns
+ * and new cursor is opened on each fire and re-fire, so opening should be cheap (e.g. indexed query
+ * with fetch size), it's not held open while tasks in flight are running.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see TaskCursor
+ */
+public interface StreamingTaskManager<T extends Task> extends TaskManager<T> {
+    /**
+     * Opens cursor over new and resumed tasks to run. Will be called from fire-caller thread
+     * or from stage-executor's thread on re-fire, only when previous cursor is closed.
+     * Tasks returned by previous cursors should not be returned again.
+     *
+     * @return cursor over tasks to run
+     */
+    TaskCursor<? extends T> openCursor();
+}
@@ -0,0 +1,22 @@
+package com.alexkasko.tasks;
+
+/**
+ * {@link TaskManager} extension with bulk stages update, used by {@link BatchingTaskManager}
+ * to flush buffered stage updates in a single call.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see BatchingTaskManager
+ */
+public interface TaskBatchManager<T extends Task> extends TaskManager<T> {
+    /**
+     * Changes stages of multiple tasks, should be done in a single transaction.
+     * Arrays have the same length, each task id is present no more than once.
+     * Will be called from stage-executor's thread or from {@link BatchingTaskManager} flush thread.
+     * Implementation should not fail if some of the tasks are not in 'processing' status anymore.
+     *
+     * @param taskIds task ids
+     * @param stages new stages for corresponding task ids
+     */
+    void updateStages(long[] taskIds, String[] stages);
+}
@@ -0,0 +1,153 @@
+package com.alexkasko.tasks;
+
+/**
+ * Per-execution task handle, created by {@link TaskEngine} when task is sent to execution
+ * and passed to {@link ContextualTaskStageProcessor}s. Holds suspension flag, that is set
+ * by {@link TaskEngine#suspend(long)}, so suspension checks don't require global lookups.
+ * Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see ContextualTaskStageProcessor
+ * @see TaskEngine
+ */
+public class TaskContext {
+    private final TaskEngine engine;
+    private final long taskId;
+    private final long startTime;
+    private volatile boolean suspended = false;
+    // timeout of the current stage if it has expired, zero otherwise
+    private volatile long expiredTimeout = 0;
+    private volatile TaskStageChain.Stage stage;
+    private volatile long stageStartTime;
+
+    /**
+     * Constructor
+     *
+     * @param engine engine that runs task
+     * @param taskId task id
+     */
+    TaskContext(TaskEngine engine, long taskId) {
+        this.engine = engine;
+        this.taskId = taskId;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns task id
+     *
+     * @return task id
+     */
+    public long getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Returns time, when task was sent to execution
+     *
+     * @return start time in millis
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns time, when current stage processing was started
+     *
+     * @return stage start time in millis
+     */
+    public long getStageStartTime() {
+        return stageStartTime;
+    }
+
+    /**
+     * Returns intermediate name of the current stage
+     *
+     * @return intermediate name of the current stage
+     */
+    public String getStageName() {
+        return stage.getIntermediate();
+    }
+
+    /**
+     * Returns completed name of the current stage
+     *
+     * @return completed name of the current stage
+     */
+    public String getCompletedStageName() {
+        return stage.getCompleted();
+    }
+
+    /**
+     * Returns processor ID of the current stage
+     *
+     * @return processor ID of the current stage
+     */
+    public String getProcessorId() {
+        return stage.getProcessorId();
+    }
+
+    /**
+     * Returns position of the current stage in chain
+     *
+     * @return ordinal of the current stage
+     */
+    public int getStageOrdinal() {
+        return stage.getOrdinal();
+    }
+
+    /**
+     * Whether task was suspended and this suspension wasn't consumed yet
+     *
+     * @return whether task was suspended
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Throws {@link TaskSuspendedException} on successful suspension check.
+     * Costs single volatile read if task is not suspended, never blocks and doesn't
+     * change thread interruption status, so may be called from tight and interruptible loops.
+     *
+     * @throws TaskSuspendedException if task was suspended
+     * @throws TaskStageTimeoutException if current stage timeout has expired
+     */
+    public void checkSuspended() throws TaskSuspendedException, TaskStageTimeoutException {
+        if(!suspended) return;
+        suspended = false;
+        checkExpired();
+        // suspension may be already consumed through engine
+        engine.checkSuspended(taskId);
+    }
+
+    void checkExpired() throws TaskStageTimeoutException {
+        long timeout = expiredTimeout;
+        if(timeout > 0) throw new TaskStageTimeoutException(taskId, stage.getIntermediate(), timeout);
+    }
+
+    void markSuspended() {
+        suspended = true;
+    }
+
+    // timeout is reported through suspension check
+    void markExpired(long timeoutMillis) {
+        expiredTimeout = timeoutMillis;
+        suspended = true;
+    }
+
+    void startStage(TaskStageChain.Stage stage) {
+        this.stage = stage;
+        this.expiredTimeout = 0;
+        this.stageStartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TaskContext{taskId=" + taskId + ", stage=" + stage + ", suspended=" + suspended +
+                ", expiredTimeout=" + expiredTimeout + "}";
+    }
+}
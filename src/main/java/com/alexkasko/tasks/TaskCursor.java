@@ -0,0 +1,26 @@
+package com.alexkasko.tasks;
+
+/**
+ * Cursor over tasks to run returned by {@link StreamingTaskManager#openCursor()}.
+ * Engine reads it incrementally while it has free slots and closes it before fire returns,
+ * so only tasks read from cursor are held in memory. Is accessed by the single thread, that opened it.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see StreamingTaskManager
+ */
+public interface TaskCursor<T extends Task> {
+    /**
+     * Returns next task to run, returned task should be switched into 'processing' status in DB
+     * no later than this call
+     *
+     * @return next task or {@code null} if cursor is exhausted
+     */
+    T next();
+
+    /**
+     * Releases cursor resources, tasks not read from cursor must be left available for following cursors.
+     * Will be called once, after exhaustion, on read error or when there are no free slots.
+     */
+    void close();
+}
@@ -3,12 +3,22 @@ package com.alexkasko.tasks;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
-
-import static java.util.Collections.newSetFromMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Engine for asynchronous multistage suspendable tasks.
@@ -16,7 +26,9 @@ import static java.util.Collections.newSetFromMap;
  * tasks stage will be updated between stages processing. Task status will be updated on error,
  * suspend or after successful processing of last stage.
  * Processors should call {@link TaskEngine#checkSuspended(long)} method periodically, it will
- * throw {@link TaskSuspendedException} on successful check.
+ * throw {@link TaskSuspendedException} on successful check, {@link ContextualTaskStageProcessor}s
+ * may use cheaper {@link TaskContext#checkSuspended()} instead.
+ * Optional features are configured using {@link Builder}.
  *
  * @author alexkasko
  * Date: 5/17/12
@@ -25,20 +37,70 @@ import static java.util.Collections.newSetFromMap;
  * @see TaskProcessorProvider
  * @see TaskStageChain
  * @see TaskStageProcessor
+ * @see ContextualTaskStageProcessor
  * @see TaskSuspendedException
  */
 public class TaskEngine implements Runnable {
     private static final Log logger = LogFactory.getLog(TaskEngine.class);
+    private static final long WATCHDOG_TICK_MILLIS = 10;
+    private static final int WATCHDOG_WHEEL_SIZE = 512;
+    // period of suspension passes during shutdown
+    private static final long DRAIN_PASS_MILLIS = 10;
 
     private final Executor executor;
+    // stage executors routing, empty if all stages run in default executor
+    private final Map<String, Executor> processorExecutors;
+    private final Map<String, Executor> tagExecutors;
+    private final boolean routed;
+    // per processor concurrency limits, empty if stages are not limited
+    private final Map<String, Bulkhead> bulkheads;
+    // per processor rate limits, empty if stages are not limited
+    private final Map<String, TokenBucket> rateLimits;
+    // deferred stage starts and retries, own timer thread is created on first use if not provided
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean ownScheduler = false;
+    private final Object schedulerLock = new Object();
+    // stage deadlines, created on first use
+    private volatile TimingWheel watchdog;
+    private final long stageTimeoutMillis;
+    // priority run queues in front of executors, null if priority dispatch is disabled
+    private final ConcurrentMap<Executor, PriorityRunQueue> runQueues;
+    private final long priorityAgingNanos;
+    // whether tasks are resubmitted to executor after each stage
+    private final boolean stageGranular;
     private final TaskManager<? extends Task> manager;
+    // not null if manager supports coalesced stage transitions
+    private final TaskTransitionManager<? extends Task> transitions;
     private final TaskProcessorProvider provider;
-    // concurrent hash set creation
-    private final Set<Long> awaitsSuspension = newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
-    private final Object fireLock = new Object();
+    // primitive set, checks on empty set don't take locks
+    private final ConcurrentLongHashSet awaitsSuspension = new ConcurrentLongHashSet();
+    // tasks with expired stage timeouts, reported through suspension checks until stage exits
+    private final ConcurrentLongHashSet expired = new ConcurrentLongHashSet();
+    // not a monitor, so virtual threads blocked in DAO calls during fire are not pinned
+    private final ReentrantLock fireLock = new ReentrantLock();
+    // tasks sent to executor and not finished yet
+    private final ConcurrentMap<Long, StageRunnable> running = new ConcurrentHashMap<Long, StageRunnable>();
+    // capacity-aware mode, not null if capacity is set
+    private final BoundedTaskManager<? extends Task> bounded;
+    // not null if manager returns tasks as cursor
+    private final StreamingTaskManager<? extends Task> streaming;
+    private final int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // whether last bounded fire was limited by capacity, so more tasks may be available
+    private volatile boolean backlogged = false;
+    private final AtomicInteger refireRequests = new AtomicInteger();
+    private final Object pollingLock = new Object();
+    private volatile PollingDispatcher dispatcher;
+    // null if metrics are disabled
+    private final TaskEngineMetrics metrics;
+    private volatile boolean shutdown = false;
+    // signalled when last task in flight is finished during shutdown
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Condition drained = drainLock.newCondition();
 
     /**
-     * Constructor
+     * Constructor, if provided manager implements {@link TaskTransitionManager}, its coalesced
+     * operations will be used for stage transitions
      *
      * @param executor executor will be used to process separate stages
      * @param manager tasks DAO for all task state operations
@@ -47,40 +109,344 @@ public class TaskEngine implements Runnable {
      */
     public TaskEngine(Executor executor, TaskManager<? extends Task> manager, TaskProcessorProvider provider)
             throws TaskEngineException {
-        if(null == executor) throw new TaskEngineException("Provided executor is null");
-        if(null == manager) throw new TaskEngineException("Provided manager is null");
-        if(null == provider) throw new TaskEngineException("Input provider is null");
-        this.executor = executor;
-        this.manager = manager;
-        this.provider = provider;
+        this(new Builder(executor, manager, provider));
+    }
+
+    /**
+     * Protected constructor for inheritors
+     *
+     * @param builder engine configuration
+     * @throws TaskEngineException on invalid input
+     */
+    @SuppressWarnings("unchecked")
+    protected TaskEngine(Builder builder) throws TaskEngineException {
+        if(null == builder) throw new TaskEngineException("Provided builder is null");
+        if(null == builder.executor) throw new TaskEngineException("Provided executor is null");
+        if(null == builder.manager) throw new TaskEngineException("Provided manager is null");
+        if(null == builder.provider) throw new TaskEngineException("Input provider is null");
+        this.executor = builder.executor;
+        this.processorExecutors = Collections.unmodifiableMap(new HashMap<String, Executor>(builder.processorExecutors));
+        this.tagExecutors = Collections.unmodifiableMap(new HashMap<String, Executor>(builder.tagExecutors));
+        this.routed = !(processorExecutors.isEmpty() && tagExecutors.isEmpty());
+        Map<String, Bulkhead> bhs = new HashMap<String, Bulkhead>();
+        for(Map.Entry<String, Integer> en : builder.processorConcurrency.entrySet()) {
+            bhs.put(en.getKey(), new Bulkhead(en.getValue()));
+        }
+        this.bulkheads = Collections.unmodifiableMap(bhs);
+        this.rateLimits = Collections.unmodifiableMap(new HashMap<String, TokenBucket>(builder.rateLimits));
+        this.scheduler = builder.scheduler;
+        this.stageTimeoutMillis = builder.stageTimeoutMillis;
+        this.priorityAgingNanos = TimeUnit.MILLISECONDS.toNanos(builder.priorityAgingMillis);
+        this.runQueues = builder.priorityAgingMillis > 0 ? new ConcurrentHashMap<Executor, PriorityRunQueue>() : null;
+        this.stageGranular = builder.stageGranular;
+        this.provider = builder.provider;
+        this.metrics = builder.metrics;
+        // manager calls are measured by decorator, so disabled metrics cost nothing there
+        this.manager = null != metrics ? metered(builder.manager, metrics) : builder.manager;
+        this.transitions = builder.manager instanceof TaskTransitionManager ? (TaskTransitionManager<? extends Task>) manager : null;
+        this.capacity = builder.capacity;
+        this.streaming = builder.manager instanceof StreamingTaskManager ? (StreamingTaskManager<? extends Task>) manager : null;
+        if(capacity > 0 && null == streaming) {
+            if(!(builder.manager instanceof BoundedTaskManager)) throw new TaskEngineException(
+                    "Capacity-aware mode requires manager implementing BoundedTaskManager or StreamingTaskManager, " +
+                    "provided manager: [" + builder.manager + "]");
+            this.bounded = (BoundedTaskManager<? extends Task>) manager;
+        } else {
+            this.bounded = null;
+        }
+    }
+
+    private static <T extends Task> TaskManager<T> metered(TaskManager<T> manager, TaskEngineMetrics metrics) {
+        return new MeteredTaskManager<T>(manager, metrics);
+    }
+
+    /**
+     * Builder instance factory method
+     *
+     * @param executor executor will be used to process separate stages
+     * @param manager tasks DAO for all task state operations
+     * @param provider stage processors provider
+     * @return {@link Builder} builder for engine
+     */
+    public static Builder builder(Executor executor, TaskManager<? extends Task> manager, TaskProcessorProvider provider) {
+        return new Builder(executor, manager, provider);
     }
 
     /**
      * Sends tasks provided by {@link TaskManager#markProcessingAndLoad()}
-     * to execution
+     * to execution. In capacity-aware mode claims no more tasks than there are free slots
+     * using {@link BoundedTaskManager#markProcessingAndLoad(int)}, repeating claims while
+     * they return full batches and free slots are available. If manager implements {@link StreamingTaskManager},
+     * tasks are read from its cursor one by one, in capacity-aware mode cursor is closed when there are
+     * no free slots and new cursor is opened on re-fire. Does nothing after {@link #shutdown(long)}.
      *
      * @return count of tasks sent for processing
      * @throws TaskEngineException on invalid results of {@link com.alexkasko.tasks.TaskManager#markProcessingAndLoad()}
      */
     public int fire() throws TaskEngineException {
-        synchronized (fireLock) {
-            Collection<? extends Task> tasksToFire = manager.markProcessingAndLoad();
-            if(0 == tasksToFire.size()) {
-                logger.debug("No tasks to fire, returning to sleep");
+        fireLock.lock();
+        try {
+            if(shutdown) {
+                logger.debug("Engine is shut down, not firing");
                 return 0;
             }
-            // fire tasks
+            if(null != streaming) return fireStreaming();
+            if(null == bounded) return dispatch(manager.markProcessingAndLoad());
             int counter = 0;
-            for(Task task : tasksToFire) {
-                if(null == task) throw new TaskEngineException("Provided task is null, task list to fire: [" + tasksToFire + "]");
-                awaitsSuspension.remove(task.getId()); // should be suspended during execution, not BEFORE it
-                logger.debug("Firing task: [" + task + "]");
-                Runnable runnable = new StageRunnable(task);
-                executor.execute(runnable);
-                counter += 1;
-            }
-            if(counter > 0 ) logger.debug(counter + " tasks fired");
+            for(;;) {
+                int limit = capacity - inFlight.get();
+                if(limit <= 0) {
+                    // will be re-fired when slots will be freed
+                    backlogged = true;
+                    // slots freed before the flag was set won't re-fire
+                    limit = capacity - inFlight.get();
+                    if(limit <= 0) break;
+                }
+                Collection<? extends Task> tasksToFire = bounded.markProcessingAndLoad(limit);
+                if(tasksToFire.size() > limit) logger.warn("Manager returned: [" + tasksToFire.size() + "] tasks, " +
+                        "exceeding requested limit: [" + limit + "], all of them will be fired");
+                counter += dispatch(tasksToFire);
+                backlogged = tasksToFire.size() >= limit;
+                if(!backlogged) break;
+            }
             return counter;
+        } finally {
+            fireLock.unlock();
+        }
+    }
+
+    // called under fire lock, cursor is not kept between fires, so it is not held open
+    // (with its DB connection) while tasks in flight are running
+    private int fireStreaming() {
+        if(capacity > 0 && inFlight.get() >= capacity) {
+            // will be re-fired when slots will be freed
+            backlogged = true;
+            // slots freed before the flag was set won't re-fire
+            if(inFlight.get() >= capacity) return 0;
+        }
+        TaskCursor<? extends Task> cursor = streaming.openCursor();
+        if(null == cursor) throw new TaskEngineException("Null cursor returned by manager: [" + streaming + "]");
+        int counter = 0;
+        try {
+            for(;;) {
+                Task task = cursor.next();
+                if(null == task) {
+                    backlogged = false;
+                    break;
+                }
+                if(dispatchTask(task)) counter += 1;
+                if(capacity > 0 && inFlight.get() >= capacity) {
+                    backlogged = true;
+                    if(inFlight.get() >= capacity) break;
+                }
+            }
+        } finally {
+            closeCursor(cursor);
+        }
+        if(counter > 0) logger.debug(counter + " tasks fired");
+        else logger.debug("No tasks to fire, returning to sleep");
+        return counter;
+    }
+
+    private static void closeCursor(TaskCursor<? extends Task> cursor) {
+        try {
+            cursor.close();
+        } catch (Exception e) {
+            logger.warn("Error closing tasks cursor", e);
+        }
+    }
+
+    private int dispatch(Collection<? extends Task> tasksToFire) {
+        if(0 == tasksToFire.size()) {
+            logger.debug("No tasks to fire, returning to sleep");
+            return 0;
+        }
+        // fire tasks
+        int counter = 0;
+        for(Task task : tasksToFire) {
+            if(null == task) throw new TaskEngineException("Provided task is null, task list to fire: [" + tasksToFire + "]");
+            if(dispatchTask(task)) counter += 1;
+        }
+        if(counter > 0 ) logger.debug(counter + " tasks fired");
+        return counter;
+    }
+
+    private boolean dispatchTask(Task task) {
+        StageRunnable runnable = new StageRunnable(task);
+        if(null != running.putIfAbsent(task.getId(), runnable)) {
+            logger.debug("Task: [" + task + "] is already running, skipping it");
+            return false;
+        }
+        awaitsSuspension.remove(task.getId()); // should be suspended during execution, not BEFORE it
+        logger.debug("Firing task: [" + task + "]");
+        inFlight.incrementAndGet();
+        if(null != metrics) {
+            metrics.taskDispatched(task.getId());
+            runnable.dispatched = System.nanoTime();
+        }
+        try {
+            enqueue(runnable.executor, runnable);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            running.remove(task.getId(), runnable);
+            if(null != metrics) metrics.taskFinished(task.getId());
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Sends task directly to execution bypassing {@link TaskManager#markProcessingAndLoad()}.
+     * Intended for tasks created in the same JVM, caller must persist the task and switch it
+     * into 'processing' status (the same way {@code markProcessingAndLoad} does) before this call.
+     * Task won't be sent to execution again by concurrent {@link #fire()} while it's running.
+     * Submitted tasks are counted as in flight, but are not limited by capacity.
+     *
+     * @param task task to run
+     * @return {@code true} if task was sent to execution, {@code false} if this task is already running
+     * @throws TaskEngineException on null task, task returning null stage chain or after {@link #shutdown(long)}
+     */
+    public boolean submit(Task task) throws TaskEngineException {
+        if(null == task) throw new TaskEngineException("Provided task is null");
+        if(shutdown) throw new TaskEngineException("Engine is shut down, task, id: [" + task.getId() + "] rejected");
+        return dispatchTask(task);
+    }
+
+    // called after task execution finish, fires more tasks if last fire was limited by capacity
+    private void refireIfBacklogged() {
+        // fire loop in this thread will take free slot into account
+        if(!backlogged || fireLock.isHeldByCurrentThread()) return;
+        // other thread is re-firing already, it will repeat fire for this request
+        if(refireRequests.getAndIncrement() > 0) return;
+        int requests = 1;
+        for(;;) {
+            try {
+                fire();
+            } catch (Exception e) {
+                logger.error("Error re-firing tasks", e);
+            }
+            int left = refireRequests.addAndGet(-requests);
+            if(0 == left) return;
+            requests = left;
+        }
+    }
+
+    /**
+     * Starts built-in dispatcher thread, that calls {@link #fire()} in a loop instead of external scheduler.
+     * Dispatcher re-polls immediately if fire was limited by capacity (see {@link Builder#capacity(int)}),
+     * waits {@code minDelayMillis} after non-empty fire and backs off exponentially up to
+     * {@code maxDelayMillis} after empty fires. Wait is interrupted by {@link #wakeUp()}.
+     *
+     * @param minDelayMillis delay after non-empty fire and initial backoff delay
+     * @param maxDelayMillis max backoff delay
+     * @throws TaskEngineException if polling is already started
+     */
+    public void startPolling(long minDelayMillis, long maxDelayMillis) throws TaskEngineException {
+        synchronized (pollingLock) {
+            if(null != dispatcher) throw new TaskEngineException("Polling is already started");
+            PollingDispatcher pd = new PollingDispatcher(this, minDelayMillis, maxDelayMillis);
+            pd.start();
+            dispatcher = pd;
+        }
+    }
+
+    /**
+     * Stops built-in dispatcher thread, doesn't wait for current fire to finish.
+     * Does nothing if polling is not started.
+     */
+    public void stopPolling() {
+        synchronized (pollingLock) {
+            if(null == dispatcher) return;
+            dispatcher.stop();
+            dispatcher = null;
+        }
+    }
+
+    /**
+     * Makes built-in dispatcher to fire immediately, should be called by producers after
+     * inserting new tasks. Does nothing if polling is not started.
+     */
+    public void wakeUp() {
+        PollingDispatcher pd = dispatcher;
+        if(null != pd) pd.wakeUp();
+    }
+
+    // whether last fire was limited by capacity
+    boolean isBacklogged() {
+        return backlogged;
+    }
+
+    /**
+     * Returns number of tasks sent to executor and not finished yet
+     *
+     * @return number of tasks in flight
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Shuts engine down gracefully. Stops built-in polling, after this call {@link #fire()} doesn't claim
+     * new tasks and {@link #submit(Task)} rejects them. All running tasks are suspended (see {@link #suspend(long)}),
+     * deferred stage starts and retries are resumed immediately, so tasks persist suspended status
+     * on the next suspension check. Waits until all tasks in flight are finished, engine-owned timer
+     * and watchdog threads are stopped if all tasks were drained. Tasks that were not drained
+     * (e.g. with processors not checking suspension) are left running and returned in report.
+     *
+     * @param timeoutMillis max time to wait for tasks in flight
+     * @return report with tasks, that were not finished in time
+     * @throws TaskEngineException on negative timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public TaskEngineShutdownReport shutdown(long timeoutMillis) throws TaskEngineException, InterruptedException {
+        if(timeoutMillis < 0) throw new TaskEngineException("Provided timeoutMillis: [" + timeoutMillis + "] must be non-negative");
+        logger.info("Shutting down engine, tasks in flight: [" + inFlight.get() + "]");
+        shutdown = true;
+        stopPolling();
+        // waits for concurrent fire, tasks claimed by it will be suspended
+        fireLock.lock();
+        fireLock.unlock();
+        int initial = inFlight.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for(;;) {
+            // repeated, so concurrently submitted and resumed tasks are suspended too
+            for(Map.Entry<Long, StageRunnable> en : running.entrySet()) {
+                if(!awaitsSuspension.contains(en.getKey())) suspend(en.getKey());
+                en.getValue().resumeDeferred();
+            }
+            long left = deadline - System.nanoTime();
+            if(0 == inFlight.get() || left <= 0) break;
+            drainLock.lock();
+            try {
+                if(inFlight.get() > 0) drained.awaitNanos(Math.min(left, TimeUnit.MILLISECONDS.toNanos(DRAIN_PASS_MILLIS)));
+            } finally {
+                drainLock.unlock();
+            }
+        }
+        List<Long> undrained = new ArrayList<Long>(running.keySet());
+        if(undrained.isEmpty()) {
+            stopTimers();
+        } else {
+            logger.warn("Tasks were not drained on shutdown, ids: " + undrained);
+        }
+        return new TaskEngineShutdownReport(Math.max(0, initial - undrained.size()), undrained);
+    }
+
+    private void stopTimers() {
+        TimingWheel wd = watchdog;
+        if(null != wd) wd.stop();
+        ScheduledExecutorService ses = scheduler;
+        if(ownScheduler && null != ses) ses.shutdown();
+    }
+
+    // called after task execution finish
+    private void signalIfDrained() {
+        if(!shutdown || inFlight.get() > 0) return;
+        drainLock.lock();
+        try {
+            drained.signalAll();
+        } finally {
+            drainLock.unlock();
         }
     }
 
@@ -95,14 +461,17 @@ public class TaskEngine implements Runnable {
     }
 
     /**
-     * Mark task as suspended
+     * Mark task as suspended, sets suspension flag in {@link TaskContext} if task is running
      *
      * @param taskId task id
      * @return {@code false} if task was already suspended, {@code true} otherwise
      */
     public boolean suspend(long taskId) {
         logger.debug("Suspending task, id: [" + taskId + "]");
-        return awaitsSuspension.add(taskId);
+        boolean res = awaitsSuspension.add(taskId);
+        StageRunnable runnable = running.get(taskId);
+        if(null != runnable) runnable.context.markSuspended();
+        return res;
     }
 
     /**
@@ -110,98 +479,776 @@ public class TaskEngine implements Runnable {
      *
      * @param taskId task id
      * @throws TaskSuspendedException if task was already suspended
+     * @throws TaskStageTimeoutException if current stage timeout has expired
      */
     public void checkSuspended(long taskId) {
+        if(expired.contains(taskId)) {
+            StageRunnable runnable = running.get(taskId);
+            if(null != runnable) runnable.context.checkExpired();
+        }
         if(awaitsSuspension.remove(taskId)) throw new TaskSuspendedException(taskId);
     }
 
-    // Runnable instead of Callable is deliberate
+    // sends runnable to executor through priority run queue, if priority dispatch is enabled
+    private void enqueue(Executor target, StageRunnable runnable) {
+        if(null == runQueues) {
+            target.execute(runnable);
+            return;
+        }
+        PriorityRunQueue queue = runQueues.get(target);
+        if(null == queue) {
+            PriorityRunQueue created = new PriorityRunQueue(target, priorityAgingNanos);
+            PriorityRunQueue existed = runQueues.putIfAbsent(target, created);
+            queue = null != existed ? existed : created;
+        }
+        queue.execute(runnable, runnable.priority);
+    }
+
+    // executor for the stage, processor id routing takes precedence over tag routing
+    private Executor executorFor(TaskStageChain.Stage stage) {
+        Executor res = processorExecutors.get(stage.getProcessorId());
+        if(null == res && null != stage.getTag()) res = tagExecutors.get(stage.getTag());
+        return null != res ? res : executor;
+    }
+
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService res = scheduler;
+        if(null != res) return res;
+        synchronized (schedulerLock) {
+            if(null == scheduler) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("task-engine-timer"));
+                ownScheduler = true;
+            }
+            return scheduler;
+        }
+    }
+
+    private TimingWheel watchdog() {
+        TimingWheel res = watchdog;
+        if(null != res) return res;
+        synchronized (schedulerLock) {
+            if(null == watchdog) {
+                watchdog = new TimingWheel(WATCHDOG_TICK_MILLIS, WATCHDOG_WHEEL_SIZE, "task-engine-watchdog");
+            }
+            return watchdog;
+        }
+    }
+
+    // Runnable instead of Callable is deliberate,
+    // resubmitted to executor after each asynchronous stage completion and on executor hops between stages
+    // task entity is reduced to id, chain and stage ordinal on dispatch, so it's not retained during execution
     private class StageRunnable implements Runnable {
-        private final Task task;
+        private final long taskId;
+        private final TaskStageChain chain;
+        // ordinal of the stage to start from, -1 if task stage is invalid
+        private final int initialOrdinal;
+        // reported on run, so other fired tasks are not affected
+        private final TaskEngineException invalidStage;
+        private final TaskContext context;
+        private final int priority;
+        // nano time of sending to executor, set only if metrics are enabled
+        private long dispatched;
+        // execution state, kept between runs, published through future and executor
+        private TaskStageChain.Stage stage;
+        // whether intermediate name of the current stage was already persisted on previous stage completion
+        private boolean started = false;
+        private TaskStageProcessor processor;
+        // not null while asynchronous stage is pending
+        private TaskStageFuture pending;
+        // nano time of asynchronous stage start, set only if metrics are enabled
+        private long asyncStarted;
+        // executor this runnable is sent to
+        private Executor executor;
+        // whether current stage was entered and not completed yet (deferred, parked for permit or pending)
+        private boolean entered = false;
+        // whether rate limit was checked for current stage
+        private boolean rated = false;
+        // whether concurrency permit was granted for current stage (maybe after parking)
+        private boolean admitted = false;
+        // concurrency limit, which permit is held by this runnable
+        private Bulkhead bulkhead;
+        // number of failed attempts of current stage
+        private int attempts = 0;
+        // deadline of pending asynchronous stage
+        private TimingWheel.Timeout asyncDeadline;
+        // last deferred resume, may be fired earlier on shutdown
+        private volatile DeferredResume deferred;
 
         StageRunnable(Task task) {
-            if(null == task.stageChain()) throw new TaskEngineException("Task, id: [" + task.getId() + "] returns null stageChain");
-            this.task = task;
+            this.taskId = task.getId();
+            this.chain = task.stageChain();
+            if(null == chain) throw new TaskEngineException("Task, id: [" + taskId + "] returns null stageChain");
+            this.context = new TaskContext(TaskEngine.this, taskId);
+            this.priority = task instanceof PrioritizedTask ? ((PrioritizedTask) task).getPriority() : 0;
+            TaskStageChain.Stage initial = null;
+            TaskEngineException invalid = null;
+            try {
+                initial = initialStage(task.getStageName());
+            } catch (TaskEngineException e) {
+                invalid = e;
+            }
+            this.initialOrdinal = null != initial ? initial.getOrdinal() : -1;
+            this.invalidStage = invalid;
+            this.executor = routed && null != initial && chain.hasNext(initial) ?
+                    executorFor(chain.next(initial)) : TaskEngine.this.executor;
+        }
+
+        // task interrupted during stage (e.g. reclaimed after node crash) runs this stage again
+        private TaskStageChain.Stage initialStage(String stageName) {
+            TaskStageChain.Stage res = chain.forName(stageName);
+            if (res.isStart() || res.getCompleted().equals(stageName)) return res;
+            return chain.previous(res);
         }
 
         @Override
         public void run() {
+            boolean resumed = null != stage;
+            if(null != metrics && !resumed) metrics.taskStarted(taskId, System.nanoTime() - dispatched);
+            boolean finished = true;
             try {
-                runStages();
+                finished = runStages(resumed);
             } catch (Exception e) {
-                logger.error("System error running task, id: [" + task.getId() + "]", e);
+                logger.error("System error running task, id: [" + taskId + "]", e);
+            } finally {
+                // this runnable may be already resumed in other thread if not finished
+                if(finished) {
+                    running.remove(taskId, this);
+                    inFlight.decrementAndGet();
+                    if(null != metrics) metrics.taskFinished(taskId);
+                    if(null != bounded || null != streaming) refireIfBacklogged();
+                    signalIfDrained();
+                }
             }
         }
 
-        @SuppressWarnings("unchecked")
-        private void runStages() {
-            TaskStageChain chain = task.stageChain();
-            TaskStageChain.Stage stage = chain.forName(task.getStageName());
-            boolean success = true;
-            while (chain.hasNext(stage)) {
-                if (whetherAwaitsSuspension()) {
-                    success = false;
-                    break;
-                }
-                stage = chain.next(stage);
-                success = processStage(stage);
-                if(!success) break;
+        // returns false if execution will be resumed in other thread
+        private boolean runStages(boolean resumed) {
+            if (!resumed) {
+                if (null != invalidStage) throw invalidStage;
+                stage = chain.stageAt(initialOrdinal);
             }
-            if (success) {
-                boolean justSuspended = whetherAwaitsSuspension();
-                if (!justSuspended) {
-                    manager.updateStatusSuccess(task.getId());
+            // whether stage was already processed in this run, next one is resubmitted in stage-granular mode
+            boolean processed = false;
+            while (entered || chain.hasNext(stage)) {
+                if (!entered) {
+                    if (!started && whetherAwaitsSuspension()) return true;
+                    Executor target = routed ? executorFor(chain.next(stage)) : executor;
+                    if ((target != executor || (stageGranular && processed)) && resubmit(target)) return false;
+                    stage = chain.next(stage);
+                    entered = true;
+                    rated = false;
+                    admitted = false;
+                    attempts = 0;
                 }
+                if (!admitted && !admit()) return false;
+                StageResult result = StageResult.FAILED;
+                try {
+                    result = processStage(chain);
+                } finally {
+                    // permit is held while asynchronous stage is pending, retries release it before scheduling
+                    if (StageResult.PENDING != result && StageResult.RETRYING != result) releasePermit();
+                }
+                if (StageResult.PENDING == result || StageResult.RETRYING == result) return false;
+                entered = false;
+                if (StageResult.FAILED == result) return true;
+                Completion completion = completeStage(chain, stage);
+                if (Completion.FINISHED == completion) return true;
+                started = Completion.NEXT_STARTED == completion;
+                processed = true;
+            }
+            boolean justSuspended = whetherAwaitsSuspension();
+            if (!justSuspended) {
+                manager.updateStatusSuccess(taskId);
             }
+            return true;
         }
 
-        private boolean processStage(TaskStageChain.Stage stage) {
+        private StageResult processStage(TaskStageChain chain) {
             try {
-                logger.debug("Starting stage: [" + stage.getIntermediate() + "] for task, id: [" + task.getId() + "]");
-                TaskStageProcessor processor = provider.provide(stage.getProcessorId());
-                if (null == processor) throw new TaskEngineException("Null processor returned for id: [" + stage.getProcessorId() + "]");
-                manager.updateStage(task.getId(), stage.getIntermediate());
-                fireBeforeListeners(processor);
-                processor.process(task.getId());
-                fireAfterListeners(processor);
-                logger.debug("Stage: [" + stage.getCompleted() + "] completed for task, id: [" + task.getId() + "]");
-                manager.updateStage(task.getId(), stage.getCompleted());
-                return true;
+                TaskStageFuture future = pending;
+                if (null == future) {
+                    // task may be suspended while waiting for deferred start, retry or permit
+                    if (awaitsSuspension.remove(taskId)) throw new TaskSuspendedException(taskId);
+                    logger.debug("Starting stage: [" + stage.getIntermediate() + "] for task, id: [" + taskId + "]");
+                    processor = provider.provide(stage.getProcessorId());
+                    if (null == processor) throw new TaskEngineException("Null processor returned for id: [" + stage.getProcessorId() + "]");
+                    if (!started) manager.updateStage(taskId, stage.getIntermediate());
+                    context.startStage(stage);
+                    if (0 == attempts) fireBeforeListeners(processor, stage.getProcessorId());
+                    if (processor instanceof AsyncTaskStageProcessor) {
+                        future = invokeAsync((AsyncTaskStageProcessor) processor);
+                        // must be set before listening, resumed runnable may start immediately,
+                        // no state may be touched after successful listen
+                        pending = future;
+                        long timeout = timeoutMillis();
+                        asyncDeadline = timeout > 0 ? watchdog().schedule(new Expiry(null, future, timeout), timeout) : null;
+                        if (future.listen(new ResumeRunnable())) return StageResult.PENDING;
+                        logger.debug("Stage: [" + stage.getIntermediate() + "] completed synchronously for task, id: [" + taskId + "]");
+                    } else {
+                        invokeWithTimeout(processor);
+                    }
+                }
+                if (null != future) {
+                    pending = null;
+                    if (null != asyncDeadline) {
+                        if (!disarm(asyncDeadline)) expired.remove(taskId);
+                        asyncDeadline = null;
+                    }
+                    completeAsync(future);
+                }
+                fireAfterListeners(processor, stage.getProcessorId());
+                logger.debug("Stage: [" + stage.getCompleted() + "] completed for task, id: [" + taskId + "]");
+                return StageResult.COMPLETED;
             } catch (TaskSuspendedException e) {
-                logger.info("Task, id: [" + task.getId() + "] was suspended on stage: [" + stage.getIntermediate() + "]");
-                manager.updateStatusSuspended(task.getId());
-                manager.updateStage(task.getId(), task.stageChain().previous(stage).getCompleted());
-                return false;
+                logger.info("Task, id: [" + taskId + "] was suspended on stage: [" + stage.getIntermediate() + "]");
+                String lastCompleted = chain.previous(stage).getCompleted();
+                if (null != transitions) {
+                    // manager may release the task on status change, so rollback is written together with it
+                    transitions.updateStageAndStatusSuspended(taskId, lastCompleted);
+                } else {
+                    manager.updateStatusSuspended(taskId);
+                    manager.updateStage(taskId, lastCompleted);
+                }
+                return StageResult.FAILED;
             } catch (Exception e) {
-                logger.error("Task, id: [" + task.getId() + "] caused error on stage: [" + stage.getIntermediate() + "]", e);
-                manager.updateStatusError(task.getId(), e, task.stageChain().previous(stage).getCompleted());
-                return false;
+                if (retry(e)) return StageResult.RETRYING;
+                logger.error("Task, id: [" + taskId + "] caused error on stage: [" + stage.getIntermediate() + "]", e);
+                manager.updateStatusError(taskId, e, chain.previous(stage).getCompleted());
+                return StageResult.FAILED;
             }
         }
 
-        private void fireBeforeListeners(TaskStageProcessor processor) {
+        private Completion completeStage(TaskStageChain chain, TaskStageChain.Stage stage) {
+            try {
+                if (null == transitions) {
+                    manager.updateStage(taskId, stage.getCompleted());
+                    return Completion.PERSISTED;
+                }
+                if (awaitsSuspension.remove(taskId)) {
+                    logger.info("Task, id: [" + taskId + "] was suspended, terminating execution");
+                    transitions.updateStageAndStatusSuspended(taskId, stage.getCompleted());
+                    return Completion.FINISHED;
+                }
+                if (chain.hasNext(stage)) {
+                    transitions.updateStageTransition(taskId, stage.getCompleted(), chain.next(stage).getIntermediate());
+                    return Completion.NEXT_STARTED;
+                }
+                transitions.updateStageAndStatusSuccess(taskId, stage.getCompleted());
+                return Completion.FINISHED;
+            } catch (Exception e) {
+                logger.error("Error persisting completed stage: [" + stage.getCompleted() + "] for task, id: [" + taskId + "]", e);
+                manager.updateStatusError(taskId, e, chain.previous(stage).getCompleted());
+                return Completion.FINISHED;
+            }
+        }
+
+        private long timeoutMillis() {
+            long res = stage.getTimeoutMillis();
+            return res > 0 ? res : stageTimeoutMillis;
+        }
+
+        // processor thread is interrupted on timeout, interruption is cleared after processor exits,
+        // stage fails on timeout even if processor ignored interruption and suspension checks
+        private void invokeWithTimeout(TaskStageProcessor processor) throws Exception {
+            long timeout = timeoutMillis();
+            if (0 == timeout) {
+                invokeAny(processor);
+                return;
+            }
+            TimingWheel.Timeout deadline = watchdog().schedule(new Expiry(Thread.currentThread(), null, timeout), timeout);
+            Exception failure = null;
+            boolean timedOut = false;
+            try {
+                invokeAny(processor);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                if (!disarm(deadline)) {
+                    timedOut = true;
+                    Thread.interrupted();
+                    expired.remove(taskId);
+                }
+            }
+            if (timedOut) {
+                if (failure instanceof TaskStageTimeoutException) throw failure;
+                throw new TaskStageTimeoutException(taskId, stage.getIntermediate(), timeout, failure);
+            }
+            if (null != failure) throw failure;
+        }
+
+        // returns false if deadline has expired, waits for expiry action to finish
+        private boolean disarm(TimingWheel.Timeout deadline) {
+            if (deadline.cancel()) return true;
+            deadline.awaitExpired();
+            return false;
+        }
+
+        private void invokeAny(TaskStageProcessor processor) throws Exception {
+            if (null == metrics) {
+                invoke(processor);
+            } else {
+                invokeMetered(processor, stage.getProcessorId());
+            }
+        }
+
+        private void invoke(TaskStageProcessor processor) throws Exception {
+            if(processor instanceof ContextualTaskStageProcessor) {
+                ((ContextualTaskStageProcessor) processor).process(context);
+            } else {
+                processor.process(taskId);
+            }
+        }
+
+        private void invokeMetered(TaskStageProcessor processor, String processorId) throws Exception {
+            metrics.stageStarted(taskId, processorId);
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                invoke(processor);
+                success = true;
+            } finally {
+                metrics.stageFinished(taskId, processorId, System.nanoTime() - start, success);
+            }
+        }
+
+        private TaskStageFuture invokeAsync(AsyncTaskStageProcessor processor) throws Exception {
+            if(null != metrics) {
+                metrics.stageStarted(taskId, stage.getProcessorId());
+                asyncStarted = System.nanoTime();
+            }
+            TaskStageFuture future = null;
+            try {
+                future = processor.processAsync(taskId);
+                if(null == future) throw new TaskEngineException("Null future returned by processor: [" + stage.getProcessorId() + "]");
+                return future;
+            } finally {
+                if(null == future && null != metrics) {
+                    metrics.stageFinished(taskId, stage.getProcessorId(), System.nanoTime() - asyncStarted, false);
+                }
+            }
+        }
+
+        private void completeAsync(TaskStageFuture future) throws Exception {
+            Exception failure = future.getFailure();
+            if(null != metrics) {
+                metrics.stageFinished(taskId, stage.getProcessorId(), System.nanoTime() - asyncStarted, null == failure);
+            }
+            if(null != failure) throw failure;
+        }
+
+        private void fireBeforeListeners(TaskStageProcessor processor, String processorId) {
             if(processor instanceof TaskStageListenableProcessor) {
+                long start = null != metrics ? System.nanoTime() : 0;
                 TaskStageListenableProcessor listen = (TaskStageListenableProcessor) processor;
                 for(TaskStageListener li : listen.beforeStartListeners()) {
-                    li.fire(task.getId());
+                    li.fire(taskId);
                 }
+                if(null != metrics) metrics.listenersFired(taskId, processorId, System.nanoTime() - start);
             }
         }
 
-        private void fireAfterListeners(TaskStageProcessor processor) {
+        private void fireAfterListeners(TaskStageProcessor processor, String processorId) {
             if(processor instanceof TaskStageListenableProcessor) {
+                long start = null != metrics ? System.nanoTime() : 0;
                 TaskStageListenableProcessor listen = (TaskStageListenableProcessor) processor;
                 for(TaskStageListener li : listen.afterFinishListeners()) {
-                    li.fire(task.getId());
+                    li.fire(taskId);
+                }
+                if(null != metrics) metrics.listenersFired(taskId, processorId, System.nanoTime() - start);
+            }
+        }
+
+        // resubmits this runnable before the next stage to the executor of that stage,
+        // returns false if the next stage should be run in current thread
+        private boolean resubmit(Executor target) {
+            Executor previous = executor;
+            executor = target;
+            try {
+                enqueue(target, this);
+                return true;
+            } catch (RuntimeException e) {
+                executor = previous;
+                logger.warn("Cannot send task, id: [" + taskId + "] to stage executor, " +
+                        "continuing in current executor", e);
+                return false;
+            }
+        }
+
+        // returns false if this runnable was deferred or parked and will be resumed later,
+        // rate limit is checked first, so deferred tasks don't hold concurrency permits
+        private boolean admit() {
+            if (!rated) {
+                rated = true;
+                if (!rateLimits.isEmpty() && defer()) return false;
+            }
+            // permit is held after resume if runnable gets parked
+            admitted = true;
+            return bulkheads.isEmpty() || acquirePermit();
+        }
+
+        // returns true if stage start was deferred by rate limit, no state may be touched after deferring
+        private boolean defer() {
+            TokenBucket tb = rateLimits.get(stage.getProcessorId());
+            if (null == tb) return false;
+            long delay = tb.reserve(System.nanoTime());
+            if (0 == delay) return false;
+            if (null != metrics) metrics.stageThrottled(taskId, stage.getProcessorId(), delay);
+            logger.debug("Deferring stage: [" + stage.getIntermediate() + "] for task, id: [" + taskId + "], " +
+                    "delay: [" + delay + "] ns");
+            try {
+                resumeLater(delay);
+                return true;
+            } catch (RuntimeException e) {
+                logger.warn("Cannot defer stage: [" + stage.getIntermediate() + "] for task, id: [" + taskId + "], " +
+                        "starting it immediately", e);
+                return false;
+            }
+        }
+
+        // returns true if failed stage will be retried after delay, no state may be touched after scheduling
+        private boolean retry(Exception e) {
+            TaskStageRetryPolicy policy = stage.getRetryPolicy();
+            if (null == policy) return false;
+            attempts += 1;
+            if (!policy.shouldRetry(e, attempts)) return false;
+            long delay = policy.delayMillis(attempts);
+            logger.warn("Task, id: [" + taskId + "] caused error on stage: [" + stage.getIntermediate() + "], " +
+                    "attempt: [" + attempts + "], retrying in: [" + delay + "] ms", e);
+            // intermediate stage is already persisted, limits are checked again for the next attempt
+            started = true;
+            rated = false;
+            admitted = false;
+            releasePermit();
+            try {
+                resumeLater(TimeUnit.MILLISECONDS.toNanos(delay));
+                return true;
+            } catch (RuntimeException re) {
+                logger.warn("Cannot schedule retry of stage: [" + stage.getIntermediate() + "] " +
+                        "for task, id: [" + taskId + "]", re);
+                return false;
+            }
+        }
+
+        // no state may be touched after successful scheduling
+        private void resumeLater(long delayNanos) {
+            DeferredResume resume = new DeferredResume();
+            deferred = resume;
+            try {
+                scheduler().schedule(resume, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                resume.cancel();
+                throw e;
+            }
+        }
+
+        // resumes deferred stage start or retry immediately, called on shutdown
+        private void resumeDeferred() {
+            DeferredResume dr = deferred;
+            if (null != dr) dr.run();
+        }
+
+        // returns false if this runnable was parked and will be resumed after permit hand over,
+        // no state may be touched after parking
+        private boolean acquirePermit() {
+            Bulkhead bh = bulkheads.get(stage.getProcessorId());
+            if (null == bh) return true;
+            bulkhead = bh;
+            return bh.acquire(new ResumeRunnable());
+        }
+
+        private void releasePermit() {
+            Bulkhead bh = bulkhead;
+            if (null == bh) return;
+            bulkhead = null;
+            Runnable next = bh.release();
+            if (null != next) next.run();
+        }
+
+        // continues task execution in executor after asynchronous stage completion, deferral, retry delay or permit hand over
+        private class ResumeRunnable implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    enqueue(executor, StageRunnable.this);
+                } catch (RuntimeException e) {
+                    logger.warn("Cannot resume task, id: [" + taskId + "] in executor, " +
+                            "continuing in completing thread", e);
+                    StageRunnable.this.run();
                 }
             }
         }
 
+        // one-shot resume, fired by scheduler or earlier on shutdown
+        private class DeferredResume implements Runnable {
+            private final AtomicBoolean fired = new AtomicBoolean(false);
+
+            @Override
+            public void run() {
+                if (fired.compareAndSet(false, true)) new ResumeRunnable().run();
+            }
+
+            private void cancel() {
+                fired.set(true);
+            }
+        }
+
+        // reports stage timeout through suspension check and interrupts processor thread
+        // or fails asynchronous stage, runs in watchdog thread
+        private class Expiry implements Runnable {
+            private final Thread worker;
+            private final TaskStageFuture future;
+            private final long timeout;
+            private final String stageName;
+
+            private Expiry(Thread worker, TaskStageFuture future, long timeout) {
+                this.worker = worker;
+                this.future = future;
+                this.timeout = timeout;
+                this.stageName = stage.getIntermediate();
+            }
+
+            @Override
+            public void run() {
+                logger.warn("Task, id: [" + taskId + "] timed out on stage: [" + stageName + "], " +
+                        "timeout: [" + timeout + "] ms");
+                context.markExpired(timeout);
+                expired.add(taskId);
+                if (null != worker) worker.interrupt();
+                if (null != future) future.fail(new TaskStageTimeoutException(taskId, stageName, timeout));
+            }
+        }
+
         private boolean whetherAwaitsSuspension() {
-            if (!awaitsSuspension.remove(task.getId())) return false;
-            logger.info("Task, id: [" + task.getId() + "] was suspended, terminating execution");
-            manager.updateStatusSuspended(task.getId());
+            if (!awaitsSuspension.remove(taskId)) return false;
+            logger.info("Task, id: [" + taskId + "] was suspended, terminating execution");
+            manager.updateStatusSuspended(taskId);
             return true;
         }
     }
+
+    /**
+     * Builder class for {@link TaskEngine}, not thread-safe
+     */
+    public static class Builder {
+        private final Executor executor;
+        private final TaskManager<? extends Task> manager;
+        private final TaskProcessorProvider provider;
+        private int capacity = 0;
+        private TaskEngineMetrics metrics;
+        private final Map<String, Executor> processorExecutors = new HashMap<String, Executor>();
+        private final Map<String, Executor> tagExecutors = new HashMap<String, Executor>();
+        private final Map<String, Integer> processorConcurrency = new HashMap<String, Integer>();
+        private final Map<String, TokenBucket> rateLimits = new HashMap<String, TokenBucket>();
+        private ScheduledExecutorService scheduler;
+        private long priorityAgingMillis = 0;
+        private boolean stageGranular = false;
+        private long stageTimeoutMillis = 0;
+
+        /**
+         * Constructor, protected for inheritors
+         *
+         * @param executor executor will be used to process separate stages
+         * @param manager tasks DAO for all task state operations
+         * @param provider stage processors provider
+         */
+        protected Builder(Executor executor, TaskManager<? extends Task> manager, TaskProcessorProvider provider) {
+            this.executor = executor;
+            this.manager = manager;
+            this.provider = provider;
+        }
+
+        /**
+         * Enables capacity-aware mode: engine will keep no more than {@code capacity} tasks in flight,
+         * claiming only free slots count on each fire and re-firing automatically as slots become free.
+         * Manager must implement {@link BoundedTaskManager} or {@link StreamingTaskManager}.
+         *
+         * @param capacity max number of tasks in flight
+         * @return builder instance
+         */
+        public Builder capacity(int capacity) {
+            if(capacity <= 0) throw new TaskEngineException("Provided capacity: [" + capacity + "] must be positive");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Routes stages with the given processor id to the dedicated executor, engine will switch
+         * executors at stage boundaries. Has precedence over {@link #tagExecutor(String, Executor)}.
+         *
+         * @param processorId stage processor id
+         * @param executor executor for stages with the given processor id
+         * @return builder instance
+         */
+        public Builder processorExecutor(String processorId, Executor executor) {
+            if(null == processorId) throw new TaskEngineException("Provided processorId is null");
+            if(null == executor) throw new TaskEngineException("Provided executor is null");
+            this.processorExecutors.put(processorId, executor);
+            return this;
+        }
+
+        /**
+         * Routes stages with the given tag (see {@link TaskStageChain.Builder#add(String, String, String, String)})
+         * to the dedicated executor, engine will switch executors at stage boundaries.
+         *
+         * @param tag stage tag
+         * @param executor executor for stages with the given tag
+         * @return builder instance
+         */
+        public Builder tagExecutor(String tag, Executor executor) {
+            if(null == tag) throw new TaskEngineException("Provided tag is null");
+            if(null == executor) throw new TaskEngineException("Provided executor is null");
+            this.tagExecutors.put(tag, executor);
+            return this;
+        }
+
+        /**
+         * Limits number of concurrently processed stages with the given processor id.
+         * Tasks, that reach saturated stage, are parked in per-processor queue without blocking
+         * executor threads and are resumed in order when permits become free.
+         *
+         * @param processorId stage processor id
+         * @param limit max number of concurrently processed stages
+         * @return builder instance
+         */
+        public Builder processorConcurrency(String processorId, int limit) {
+            if(null == processorId) throw new TaskEngineException("Provided processorId is null");
+            if(limit <= 0) throw new TaskEngineException("Provided limit: [" + limit + "] must be positive");
+            this.processorConcurrency.put(processorId, limit);
+            return this;
+        }
+
+        /**
+         * Limits rate of stage starts with the given processor id, burst is one call.
+         *
+         * @param processorId stage processor id
+         * @param permitsPerSecond max rate of stage starts
+         * @return builder instance
+         * @see #processorRate(String, double, int)
+         */
+        public Builder processorRate(String processorId, double permitsPerSecond) {
+            return processorRate(processorId, permitsPerSecond, 1);
+        }
+
+        /**
+         * Limits rate of stage starts with the given processor id. Starts of throttled stages are
+         * deferred using scheduler (see {@link #scheduler(ScheduledExecutorService)}) without blocking
+         * executor threads. Limit is shared between all tasks of this engine.
+         *
+         * @param processorId stage processor id
+         * @param permitsPerSecond max rate of stage starts
+         * @param burst number of stages, that may be started at once after idle period
+         * @return builder instance
+         */
+        public Builder processorRate(String processorId, double permitsPerSecond, int burst) {
+            if(null == processorId) throw new TaskEngineException("Provided processorId is null");
+            if(!(permitsPerSecond > 0)) throw new TaskEngineException(
+                    "Provided permitsPerSecond: [" + permitsPerSecond + "] must be positive");
+            if(burst <= 0) throw new TaskEngineException("Provided burst: [" + burst + "] must be positive");
+            this.rateLimits.put(processorId, new TokenBucket(permitsPerSecond, burst));
+            return this;
+        }
+
+        /**
+         * Sets scheduler for engine timed operations (deferred stage starts and stage retries), if not set
+         * engine creates its own single daemon thread when required
+         *
+         * @param scheduler scheduler, won't be shut down by engine
+         * @return builder instance
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            if(null == scheduler) throw new TaskEngineException("Provided scheduler is null");
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Enables priority dispatch: tasks and their continuations (executor switches, asynchronous stage
+         * completions, deferred and parked stage starts) are sent to executors through engine-owned priority
+         * run queues. Tasks with higher priority (see {@link PrioritizedTask}) are run first, waiting tasks are
+         * aged, so each priority point is equivalent to {@code agingMillis} of waiting.
+         *
+         * @param agingMillis waiting period equivalent to one priority point
+         * @return builder instance
+         */
+        public Builder priorityDispatch(long agingMillis) {
+            if(agingMillis <= 0) throw new TaskEngineException("Provided agingMillis: [" + agingMillis + "] must be positive");
+            this.priorityAgingMillis = agingMillis;
+            return this;
+        }
+
+        /**
+         * Enables stage-granular scheduling: after each completed stage task is resubmitted to executor
+         * as a new unit of work instead of processing all its stages in one run, so long tasks don't hold
+         * executor threads between stages and tasks are interleaved round-robin (or by priority,
+         * see {@link #priorityDispatch(long)}). Costs one executor submission per stage.
+         *
+         * @return builder instance
+         */
+        public Builder stageGranular() {
+            this.stageGranular = true;
+            return this;
+        }
+
+        /**
+         * Sets default processing timeout for stages, that have no own timeout (see {@link TaskStageChain.Builder#timeout(long)}).
+         * On timeout processor thread is interrupted, {@link TaskContext#checkSuspended()} and {@link TaskEngine#checkSuspended(long)}
+         * throw {@link TaskStageTimeoutException}, asynchronous stages are failed. Stage fails even if processor returns
+         * normally after its deadline. Task is marked as errored
+         * with rollback to the last completed stage (or retried, see {@link TaskStageRetryPolicy}).
+         * Deadlines are tracked by single watchdog thread with {@code 10} millis precision.
+         *
+         * @param timeoutMillis default stage timeout
+         * @return builder instance
+         */
+        public Builder stageTimeout(long timeoutMillis) {
+            if(timeoutMillis <= 0) throw new TaskEngineException("Provided timeoutMillis: [" + timeoutMillis + "] must be positive");
+            this.stageTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Enables metrics collection, engine will report task dispatching, {@link TaskManager} calls,
+         * stage listeners and stage processing to provided metrics. See {@link HistogramTaskEngineMetrics}
+         * for built-in implementation.
+         *
+         * @param metrics metrics implementation
+         * @return builder instance
+         */
+        public Builder metrics(TaskEngineMetrics metrics) {
+            if(null == metrics) throw new TaskEngineException("Provided metrics is null");
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Creates engine instance
+         *
+         * @return engine instance
+         */
+        public TaskEngine build() {
+            return new TaskEngine(this);
+        }
+    }
+
+    // result of stage processing
+    private enum StageResult {
+        // processor finished successfully
+        COMPLETED,
+        // asynchronous processor is working, execution will be resumed on its completion
+        PENDING,
+        // stage failed and will be retried after delay
+        RETRYING,
+        // task was suspended or failed, its status is persisted
+        FAILED
+    }
+
+    // result of persisting completed stage
+    private enum Completion {
+        // completed stage persisted
+        PERSISTED,
+        // completed stage persisted together with the next stage start
+        NEXT_STARTED,
+        // task execution finished with suspension, error or success
+        FINISHED
+    }
 }
\ No newline at end of file
@@ -17,4 +17,14 @@ public class TaskEngineException extends RuntimeException {
     public TaskEngineException(String message) {
         super(message);
     }
+
+    /**
+     * Constructor
+     *
+     * @param message exception message
+     * @param cause exception cause
+     */
+    public TaskEngineException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
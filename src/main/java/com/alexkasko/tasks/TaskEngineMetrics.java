@@ -0,0 +1,99 @@
+package com.alexkasko.tasks;
+
+/**
+ * Metrics SPI for {@link TaskEngine}, set using {@link TaskEngine.Builder#metrics(TaskEngineMetrics)}.
+ * Engine calls it around task dispatching, each {@link TaskManager} call, stage listeners and
+ * stage processing. Implementations are called from fire-caller and stage-executor's threads
+ * concurrently, so must be thread-safe and should not block.
+ * If metrics are not set, engine doesn't measure anything.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see HistogramTaskEngineMetrics
+ */
+public interface TaskEngineMetrics {
+    /**
+     * Task was sent to executor
+     *
+     * @param taskId task id
+     */
+    void taskDispatched(long taskId);
+
+    /**
+     * Task execution was started by executor
+     *
+     * @param taskId task id
+     * @param queueWaitNanos time between sending task to executor and execution start
+     */
+    void taskStarted(long taskId, long queueWaitNanos);
+
+    /**
+     * Task execution was finished with any outcome, or task was rejected by executor
+     *
+     * @param taskId task id
+     */
+    void taskFinished(long taskId);
+
+    /**
+     * Stage processor is going to be called
+     *
+     * @param taskId task id
+     * @param processorId stage processor id
+     */
+    void stageStarted(long taskId, String processorId);
+
+    /**
+     * Stage processor call was finished
+     *
+     * @param taskId task id
+     * @param processorId stage processor id
+     * @param processNanos time spent in processor
+     * @param success {@code false} if processor threw exception (including suspension), {@code true} otherwise
+     */
+    void stageFinished(long taskId, String processorId, long processNanos, boolean success);
+
+    /**
+     * Stage start was deferred by processor rate limit
+     *
+     * @param taskId task id
+     * @param processorId stage processor id
+     * @param delayNanos time, for which stage start was deferred
+     */
+    void stageThrottled(long taskId, String processorId, long delayNanos);
+
+    /**
+     * Stage listeners were fired
+     *
+     * @param taskId task id
+     * @param processorId stage processor id
+     * @param nanos time spent in listeners
+     */
+    void listenersFired(long taskId, String processorId, long nanos);
+
+    /**
+     * {@link TaskManager} method was called
+     *
+     * @param call called method
+     * @param nanos time spent in call
+     * @param success {@code false} if call threw exception, {@code true} otherwise
+     */
+    void managerCalled(ManagerCall call, long nanos, boolean success);
+
+    /**
+     * {@link TaskManager} methods called by engine
+     */
+    enum ManagerCall {
+        MARK_PROCESSING_AND_LOAD,
+        OPEN_CURSOR,
+        CURSOR_NEXT,
+        CURSOR_CLOSE,
+        UPDATE_STAGE,
+        UPDATE_STAGE_TRANSITION,
+        UPDATE_STAGE_AND_STATUS_SUCCESS,
+        UPDATE_STAGE_AND_STATUS_SUSPENDED,
+        UPDATE_STATUS_SUCCESS,
+        UPDATE_STATUS_SUSPENDED,
+        UPDATE_STATUS_ERROR
+    }
+}
@@ -0,0 +1,64 @@
+package com.alexkasko.tasks;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of {@link TaskEngine#shutdown(long)}. Tasks that were not drained are still running
+ * and are left in 'processing' status if JVM is stopped, they should be reset on restart
+ * (see {@link TaskStageChain#lastCompletedStage(String)}). Immutable.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine#shutdown(long)
+ */
+public class TaskEngineShutdownReport {
+    private final int drained;
+    private final List<Long> undrained;
+
+    /**
+     * Constructor
+     *
+     * @param drained number of tasks finished during shutdown
+     * @param undrained ids of tasks not finished in time
+     */
+    TaskEngineShutdownReport(int drained, List<Long> undrained) {
+        this.drained = drained;
+        this.undrained = Collections.unmodifiableList(undrained);
+    }
+
+    /**
+     * Whether all tasks in flight were finished
+     *
+     * @return whether all tasks were drained
+     */
+    public boolean isDrained() {
+        return undrained.isEmpty();
+    }
+
+    /**
+     * Returns number of tasks finished (suspended, completed or failed) during shutdown
+     *
+     * @return number of drained tasks
+     */
+    public int getDrained() {
+        return drained;
+    }
+
+    /**
+     * Returns ids of tasks, that were not finished in time
+     *
+     * @return ids of undrained tasks
+     */
+    public List<Long> getUndrained() {
+        return undrained;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TaskEngineShutdownReport{drained=" + drained + ", undrained=" + undrained + "}";
+    }
+}
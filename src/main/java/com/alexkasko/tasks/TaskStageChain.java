@@ -1,10 +1,20 @@
 package com.alexkasko.tasks;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Implementation of task stages list. Must be provided by {@link Task} instances. Thread-safe.
+ * Chains may be registered by id and version (see {@link Builder#register(String, int)}), registration
+ * returns shared instance for all equal chains, so chains built per task instance don't multiply
+ * stage maps and stage objects. Registered chains are serialized as id and version reference
+ * and are resolved to the shared instance on deserialization.
  *
  * @author alexkasko
  * Date: 5/22/12
@@ -14,8 +24,14 @@ import java.util.*;
  */
 public class TaskStageChain implements Serializable {
     private static final long serialVersionUID = 7486673100573364684L;
+    // registered chains, lookups don't take locks
+    private static final ConcurrentMap<ChainKey, TaskStageChain> REGISTRY = new ConcurrentHashMap<ChainKey, TaskStageChain>();
     protected final Map<String, Stage> stageMap;
     protected final List<Stage> stageList;
+    // stages by ordinals, stage ordinals are bound on chain creation and deserialization
+    private transient Stage[] stages;
+    // set once on registration, null for unregistered chains
+    private transient volatile ChainKey key;
 
     /**
      * Protected constructor for inheritors
@@ -26,12 +42,35 @@ public class TaskStageChain implements Serializable {
         if(null == stageList) throw new TaskEngineException("Null stageList provided");
         this.stageList = stageList;
         this.stageMap = new LinkedHashMap<String, Stage>();
-        for(Stage ts : stageList) {
+        bindStages();
+        for(Stage ts : stages) {
             if(!ts.isStart()) stageMap.put(ts.getIntermediate(), ts);
             stageMap.put(ts.getCompleted(), ts);
         }
     }
 
+    private void bindStages() {
+        this.stages = stageList.toArray(new Stage[stageList.size()]);
+        for(int i = 0; i < stages.length; i++) {
+            Stage ts = stages[i];
+            if(null == ts) throw new TaskEngineException("Null stage provided, stageList: [" + stageList + "]");
+            ts.bindOrdinal(i);
+        }
+    }
+
+    // ordinals are not serialized, so chains serialized by previous versions are supported
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if(null == stageList || null == stageMap) throw new InvalidObjectException("Invalid serialized chain, no stages");
+        try {
+            bindStages();
+        } catch(TaskEngineException e) {
+            InvalidObjectException ioe = new InvalidObjectException("Invalid serialized chain, stages: [" + stageList + "]");
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
     /**
      * Finds stage in chain by name. Made public (not package private) for inheritors.
      *
@@ -56,7 +95,7 @@ public class TaskStageChain implements Serializable {
         int ind = index(stage);
         if(0 == ind) throw new TaskEngineException(
                 "Start stage: [" + stage + "], has no previous stage, valid stages are: [" + stageList + "]");
-        return stageList.get(ind - 1);
+        return stages[ind - 1];
     }
 
     /**
@@ -67,9 +106,9 @@ public class TaskStageChain implements Serializable {
      */
     public Stage next(Stage stage) {
         int ind = index(stage);
-        if(stageList.size() - 1 == ind) throw new TaskEngineException(
+        if(stages.length - 1 == ind) throw new TaskEngineException(
                 "End stage: [" + stage + "], has no next stage, valid stages are: [" + stageList + "]");
-        return stageList.get(ind + 1);
+        return stages[ind + 1];
     }
 
     /**
@@ -79,7 +118,39 @@ public class TaskStageChain implements Serializable {
      * @return whether next stage exists for given stage
      */
     public boolean hasNext(Stage stage) {
-        return stageList.size() - 1 > index(stage);
+        return stages.length - 1 > index(stage);
+    }
+
+    /**
+     * Returns stage with the given ordinal (position in chain, start stage has ordinal {@code 0}).
+     * Made public (not package private) for inheritors.
+     *
+     * @param ordinal stage ordinal
+     * @return stage with the given ordinal
+     */
+    public Stage stageAt(int ordinal) {
+        if(ordinal < 0 || ordinal >= stages.length) throw new TaskEngineException(
+                "Invalid stage ordinal: [" + ordinal + "], valid stages are: [" + stageList + "]");
+        return stages[ordinal];
+    }
+
+    /**
+     * Returns ordinal of the stage with the given name. Made public (not package private) for inheritors.
+     *
+     * @param stage stage name, either intermediate or completed
+     * @return stage ordinal
+     */
+    public int ordinal(String stage) {
+        return forName(stage).ordinal;
+    }
+
+    /**
+     * Returns number of stages in this chain including start stage
+     *
+     * @return number of stages in this chain
+     */
+    public int size() {
+        return stages.length;
     }
 
     /**
@@ -109,6 +180,93 @@ public class TaskStageChain implements Serializable {
         return prev.getCompleted();
     }
 
+    /**
+     * Registers chain under the given id and version. If equal chain (with the same stages, processors, tags,
+     * retry policies and timeouts) is already registered under this id and version, returns registered instance.
+     * Retry conditions, that don't override {@code equals}, are compared by class
+     * (see {@link TaskStageRetryPolicy.Retryable}).
+     *
+     * @param id chain id
+     * @param version chain version, should be changed with chain stages
+     * @param chain chain to register
+     * @return registered chain instance
+     * @throws TaskEngineException if different chain is already registered under this id and version,
+     *         or if provided chain is already registered under another id or version
+     */
+    public static TaskStageChain register(String id, int version, TaskStageChain chain) throws TaskEngineException {
+        if(null == id) throw new TaskEngineException("Null id provided");
+        if(null == chain) throw new TaskEngineException("Null chain provided");
+        ChainKey ck = new ChainKey(id, version);
+        synchronized (REGISTRY) {
+            TaskStageChain existing = REGISTRY.get(ck);
+            if(null != existing) {
+                if(existing == chain || existing.sameStages(chain.stageList)) return existing;
+                throw new TaskEngineException("Different chain is already registered, id: [" + id + "], " +
+                        "version: [" + version + "], registered stages: [" + existing.stageList + "], " +
+                        "provided stages: [" + chain.stageList + "]");
+            }
+            if(null != chain.key) throw new TaskEngineException("Chain is already registered, id: [" + chain.key.id + "], " +
+                    "version: [" + chain.key.version + "], cannot register it with id: [" + id + "], version: [" + version + "]");
+            chain.key = ck;
+            REGISTRY.put(ck, chain);
+            return chain;
+        }
+    }
+
+    /**
+     * Removes chain registered under the given id and version from registry. Should be called for chains
+     * registered by application on its undeploy, registry is static and otherwise retains chains
+     * with their retry conditions and application classloader. Removed chain is serialized in full form
+     * and may be registered again.
+     *
+     * @param id chain id
+     * @param version chain version
+     * @return {@code true} if chain was registered, {@code false} otherwise
+     */
+    public static boolean unregister(String id, int version) {
+        if(null == id) throw new TaskEngineException("Null id provided");
+        synchronized (REGISTRY) {
+            TaskStageChain removed = REGISTRY.remove(new ChainKey(id, version));
+            if(null == removed) return false;
+            removed.key = null;
+            return true;
+        }
+    }
+
+    /**
+     * Returns chain registered under the given id and version
+     *
+     * @param id chain id
+     * @param version chain version
+     * @return registered chain
+     * @throws TaskEngineException if chain is not registered
+     */
+    public static TaskStageChain registered(String id, int version) throws TaskEngineException {
+        if(null == id) throw new TaskEngineException("Null id provided");
+        TaskStageChain res = REGISTRY.get(new ChainKey(id, version));
+        if(null == res) throw new TaskEngineException("Chain is not registered, id: [" + id + "], version: [" + version + "]");
+        return res;
+    }
+
+    /**
+     * Whether this chain is registered
+     *
+     * @return whether this chain is registered
+     */
+    public boolean isRegistered() {
+        return null != key;
+    }
+
+    /**
+     * Registered chains are serialized as reference
+     *
+     * @return chain reference if chain is registered, this instance otherwise
+     */
+    protected Object writeReplace() {
+        ChainKey ck = key;
+        return null != ck ? new ChainRef(ck.id, ck.version) : this;
+    }
+
     /**
      * Builder instance factory method
      *
@@ -131,12 +289,23 @@ public class TaskStageChain implements Serializable {
         return new Builder(startStage);
     }
 
+    private boolean sameStages(List<Stage> other) {
+        if(stages.length != other.size()) return false;
+        for(int i = 0; i < stages.length; i++) {
+            if(!stages[i].sameAs(other.get(i))) return false;
+        }
+        return true;
+    }
+
     private int index(Stage stage) {
         if(null == stage) throw new TaskEngineException("Null stage provided");
-        // for short lists this should be faster on list than on set
-        int pos = stageList.indexOf(stage);
-        if(-1 == pos) throw new TaskEngineException("Unknown stage provided, valid stages are: [" + stageList + "]");
-        return pos;
+        int ord = stage.ordinal;
+        if(ord >= 0 && ord < stages.length && stages[ord] == stage) return ord;
+        // equal stage from another instance of the same chain
+        Stage own = stageMap.get(stage.completed);
+        if(null == own || !own.equals(stage)) throw new TaskEngineException(
+                "Unknown stage provided, valid stages are: [" + stageList + "]");
+        return own.ordinal;
     }
 
     /**
@@ -170,6 +339,21 @@ public class TaskStageChain implements Serializable {
             return add(intermediate.name(), completed.name(), processorId);
         }
 
+        /**
+         * Adds new enum stage with tag to chain
+         *
+         * @param intermediate intermediate stage, e.g. 'running', 'loading_data'
+         * @param completed completed stage, e.g. 'finished', 'data_loaded'
+         * @param processorId id of the processor that will be used for this stage
+         * @param tag stage tag, e.g. 'io', 'cpu', may be used for executor routing
+         * @return builder instance
+         */
+        public Builder add(Enum<?> intermediate, Enum<?> completed, String processorId, String tag) {
+            if(null == intermediate) throw new TaskEngineException("Null intermediate stage provided");
+            if(null == completed) throw new TaskEngineException("Null completed stage provided");
+            return add(intermediate.name(), completed.name(), processorId, tag);
+        }
+
         /**
          * Adds new stage to chain
          *
@@ -179,13 +363,56 @@ public class TaskStageChain implements Serializable {
          * @return builder instance
          */
         public Builder add(String intermediate, String completed, String processorId) {
+            return add(intermediate, completed, processorId, null);
+        }
+
+        /**
+         * Adds new stage with tag to chain
+         *
+         * @param intermediate intermediate stage name, e.g. 'running', 'loading_data'
+         * @param completed completed stage name, e.g. 'finished', 'data_loaded'
+         * @param processorId id of the processor that will be used for this stage
+         * @param tag stage tag, e.g. 'io', 'cpu', may be used for executor routing, may be null
+         * @return builder instance
+         */
+        public Builder add(String intermediate, String completed, String processorId, String tag) {
             if(null == intermediate) throw new TaskEngineException("Null intermediate stage provided");
             if(null == completed) throw new TaskEngineException("Null completed stage provided");
             boolean unique1 = this.stages.add(intermediate);
             if(!unique1) throw new TaskEngineException("Duplicate stage provided: [" + intermediate + "]");
             boolean unique2 = this.stages.add(completed);
             if(!unique2) throw new TaskEngineException("Duplicate stage provided: [" + completed + "]");
-            this.list.add(new Stage(intermediate, completed, processorId));
+            this.list.add(new Stage(intermediate, completed, processorId, tag));
+            return this;
+        }
+
+        /**
+         * Sets retry policy for transient failures of the last added stage
+         *
+         * @param policy retry policy
+         * @return builder instance
+         */
+        public Builder retry(TaskStageRetryPolicy policy) {
+            if(null == policy) throw new TaskEngineException("Null policy provided");
+            Stage last = list.get(list.size() - 1);
+            if(last.isStart()) throw new TaskEngineException("Start stage: [" + last + "] cannot be retried");
+            list.set(list.size() - 1, new Stage(last.intermediate, last.completed, last.processorId, last.tag,
+                    policy, last.timeoutMillis));
+            return this;
+        }
+
+        /**
+         * Sets processing timeout of the last added stage, overrides engine default timeout
+         *
+         * @param timeoutMillis stage timeout
+         * @return builder instance
+         */
+        public Builder timeout(long timeoutMillis) {
+            if(timeoutMillis <= 0) throw new TaskEngineException("Provided timeoutMillis: [" + timeoutMillis + "] must be positive");
+            Stage last = list.get(list.size() - 1);
+            if(last.isStart()) throw new TaskEngineException("Start stage: [" + last + "] cannot have timeout");
+            list.set(list.size() - 1, new Stage(last.intermediate, last.completed, last.processorId, last.tag,
+                    last.retryPolicy, timeoutMillis));
             return this;
         }
 
@@ -195,7 +422,67 @@ public class TaskStageChain implements Serializable {
          * @return stage chain instance
          */
         public TaskStageChain build() {
-            return new TaskStageChain(list);
+            // builder may be used further
+            return new TaskStageChain(new ArrayList<Stage>(list));
+        }
+
+        /**
+         * Creates stage chain instance and registers it, returns already registered instance
+         * if equal chain is registered under this id and version
+         *
+         * @param id chain id
+         * @param version chain version, should be changed with chain stages
+         * @return registered chain instance
+         * @throws TaskEngineException if different chain is already registered under this id and version
+         * @see TaskStageChain#register(String, int, TaskStageChain)
+         */
+        public TaskStageChain register(String id, int version) throws TaskEngineException {
+            if(null == id) throw new TaskEngineException("Null id provided");
+            TaskStageChain existing = REGISTRY.get(new ChainKey(id, version));
+            // avoids creating stage maps for chains built per task instance
+            if(null != existing && existing.sameStages(list)) return existing;
+            return TaskStageChain.register(id, version, build());
+        }
+    }
+
+    private static class ChainKey {
+        private final String id;
+        private final int version;
+
+        private ChainKey(String id, int version) {
+            this.id = id;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ChainKey other = (ChainKey) o;
+            return version == other.version && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + version;
+        }
+    }
+
+    // serialized form of registered chain
+    private static class ChainRef implements Serializable {
+        private static final long serialVersionUID = 2967301884620174131L;
+        private final String id;
+        private final int version;
+
+        private ChainRef(String id, int version) {
+            this.id = id;
+            this.version = version;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            TaskStageChain res = REGISTRY.get(new ChainKey(id, version));
+            if(null == res) throw new InvalidObjectException("Chain is not registered, id: [" + id + "], version: [" + version + "]");
+            return res;
         }
     }
 
@@ -209,6 +496,11 @@ public class TaskStageChain implements Serializable {
         protected final String completed;
         protected final String processorId;
         protected final boolean start;
+        protected final String tag;
+        protected final TaskStageRetryPolicy retryPolicy;
+        protected final long timeoutMillis;
+        // position in chain, bound once on chain creation or deserialization
+        private transient int ordinal = -1;
 
         /**
          * Constructor for start stage
@@ -221,6 +513,9 @@ public class TaskStageChain implements Serializable {
             this.start = true;
             this.intermediate = null;
             this.processorId = null;
+            this.tag = null;
+            this.retryPolicy = null;
+            this.timeoutMillis = 0;
         }
 
         /**
@@ -231,12 +526,56 @@ public class TaskStageChain implements Serializable {
          * @param processorId processorId for this stage
          */
         protected Stage(String intermediate, String completed, String processorId) {
+            this(intermediate, completed, processorId, null);
+        }
+
+        /**
+         * Constructor for tagged stage
+         *
+         * @param intermediate intermediate stage name
+         * @param completed completed stage name
+         * @param processorId processorId for this stage
+         * @param tag stage tag, may be null
+         */
+        protected Stage(String intermediate, String completed, String processorId, String tag) {
+            this(intermediate, completed, processorId, tag, null);
+        }
+
+        /**
+         * Constructor for tagged stage with retry policy
+         *
+         * @param intermediate intermediate stage name
+         * @param completed completed stage name
+         * @param processorId processorId for this stage
+         * @param tag stage tag, may be null
+         * @param retryPolicy retry policy for transient failures, may be null
+         */
+        protected Stage(String intermediate, String completed, String processorId, String tag,
+                        TaskStageRetryPolicy retryPolicy) {
+            this(intermediate, completed, processorId, tag, retryPolicy, 0);
+        }
+
+        /**
+         * Constructor for tagged stage with retry policy and timeout
+         *
+         * @param intermediate intermediate stage name
+         * @param completed completed stage name
+         * @param processorId processorId for this stage
+         * @param tag stage tag, may be null
+         * @param retryPolicy retry policy for transient failures, may be null
+         * @param timeoutMillis processing timeout, zero for engine default
+         */
+        protected Stage(String intermediate, String completed, String processorId, String tag,
+                        TaskStageRetryPolicy retryPolicy, long timeoutMillis) {
             if(null == intermediate) throw new TaskEngineException("Null intermediate stage provided");
             if(null == completed) throw new TaskEngineException("Null completed stage provided");
             if(null == processorId) throw new TaskEngineException("Null processorId provided");
             this.intermediate = intermediate;
             this.completed = completed;
             this.processorId = processorId;
+            this.tag = tag;
+            this.retryPolicy = retryPolicy;
+            this.timeoutMillis = timeoutMillis;
             this.start = false;
         }
 
@@ -269,6 +608,33 @@ public class TaskStageChain implements Serializable {
             return processorId;
         }
 
+        /**
+         * Returns tag of this stage
+         *
+         * @return tag of this stage, {@code null} if stage is not tagged
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * Returns retry policy of this stage
+         *
+         * @return retry policy of this stage, {@code null} if stage failures are not retried
+         */
+        public TaskStageRetryPolicy getRetryPolicy() {
+            return retryPolicy;
+        }
+
+        /**
+         * Returns processing timeout of this stage
+         *
+         * @return processing timeout in millis, zero if engine default timeout should be used
+         */
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
         /**
          * Whether this stage is start stage
          *
@@ -278,6 +644,43 @@ public class TaskStageChain implements Serializable {
             return start;
         }
 
+        /**
+         * Returns position of this stage in chain, start stage has ordinal {@code 0}
+         *
+         * @return position of this stage in chain
+         */
+        public int getOrdinal() {
+            if(-1 == ordinal) throw new TaskEngineException("Stage: [" + completed + "] is not bound to chain");
+            return ordinal;
+        }
+
+        // equals() compares names only
+        private boolean sameAs(Stage other) {
+            return getClass() == other.getClass() && start == other.start && completed.equals(other.completed) &&
+                    eq(intermediate, other.intermediate) && eq(processorId, other.processorId) && eq(tag, other.tag) &&
+                    samePolicy(retryPolicy, other.retryPolicy) && timeoutMillis == other.timeoutMillis;
+        }
+
+        private static boolean samePolicy(TaskStageRetryPolicy p1, TaskStageRetryPolicy p2) {
+            return null == p1 ? null == p2 : null != p2 && p1.sameAs(p2);
+        }
+
+        private static boolean eq(Object o1, Object o2) {
+            return null == o1 ? null == o2 : o1.equals(o2);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            this.ordinal = -1;
+        }
+
+        private void bindOrdinal(int ordinal) {
+            if(-1 != this.ordinal && ordinal != this.ordinal) throw new TaskEngineException(
+                    "Stage: [" + completed + "] is already bound to ordinal: [" + this.ordinal + "], " +
+                    "cannot bind it to ordinal: [" + ordinal + "]");
+            this.ordinal = ordinal;
+        }
+
         /**
          * {@inheritDoc}
          */
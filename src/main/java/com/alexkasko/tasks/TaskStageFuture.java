@@ -0,0 +1,115 @@
+package com.alexkasko.tasks;
+
+/**
+ * Result of asynchronous stage processing, returned by {@link AsyncTaskStageProcessor}.
+ * Must be completed exactly once using {@link #complete()} or {@link #fail(Exception)},
+ * following calls are ignored. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see AsyncTaskStageProcessor
+ */
+public class TaskStageFuture {
+    private boolean done = false;
+    private Exception failure;
+    // set by engine, called once on completion
+    private Runnable listener;
+
+    /**
+     * Creates successfully completed future
+     *
+     * @return completed future
+     */
+    public static TaskStageFuture completed() {
+        TaskStageFuture res = new TaskStageFuture();
+        res.complete();
+        return res;
+    }
+
+    /**
+     * Creates failed future
+     *
+     * @param e failure
+     * @return failed future
+     * @throws TaskEngineException on null failure
+     */
+    public static TaskStageFuture failed(Exception e) throws TaskEngineException {
+        TaskStageFuture res = new TaskStageFuture();
+        res.fail(e);
+        return res;
+    }
+
+    /**
+     * Completes stage successfully
+     *
+     * @return {@code false} if future was already completed, {@code true} otherwise
+     */
+    public boolean complete() {
+        return finish(null);
+    }
+
+    /**
+     * Completes stage with failure, {@link TaskSuspendedException} will suspend the task,
+     * other exceptions will switch it into 'error' status
+     *
+     * @param e failure
+     * @return {@code false} if future was already completed, {@code true} otherwise
+     * @throws TaskEngineException on null failure
+     */
+    public boolean fail(Exception e) throws TaskEngineException {
+        if(null == e) throw new TaskEngineException("Provided exception is null");
+        return finish(e);
+    }
+
+    /**
+     * Whether stage was completed
+     *
+     * @return whether stage was completed
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns stage failure
+     *
+     * @return failure, {@code null} if stage is not completed or completed successfully
+     */
+    public synchronized Exception getFailure() {
+        return failure;
+    }
+
+    private boolean finish(Exception e) {
+        Runnable li;
+        synchronized (this) {
+            if(done) return false;
+            done = true;
+            failure = e;
+            li = listener;
+            listener = null;
+        }
+        // called outside of the lock
+        if(null != li) li.run();
+        return true;
+    }
+
+    /**
+     * Sets completion listener, only one listener is supported
+     *
+     * @param listener listener
+     * @return {@code false} if future is already completed and listener won't be called, {@code true} otherwise
+     */
+    synchronized boolean listen(Runnable listener) {
+        if(done) return false;
+        this.listener = listener;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "TaskStageFuture{done=" + done + ", failure=" + failure + "}";
+    }
+}
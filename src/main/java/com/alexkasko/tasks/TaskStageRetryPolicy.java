@@ -0,0 +1,280 @@
+package com.alexkasko.tasks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retry policy for transient stage failures, set for stage using {@link TaskStageChain.Builder#retry(TaskStageRetryPolicy)}.
+ * Failed stage attempts are retried after exponentially growing delay without holding executor threads,
+ * only the final outcome (stage completion or error) is persisted. {@link TaskSuspendedException}s are never retried.
+ * Immutable, thread-safe if provided {@link Retryable} is thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskStageChain.Builder#retry(TaskStageRetryPolicy)
+ */
+public class TaskStageRetryPolicy implements Serializable {
+    private static final long serialVersionUID = 4216903774856390215L;
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final Retryable retryable;
+    // conditions not overriding equals are compared by class on chain registration
+    private final boolean retryableByClass;
+
+    /**
+     * Constructor
+     *
+     * @param maxAttempts max number of stage attempts including the first one
+     * @param initialDelayMillis delay before the first retry
+     * @param maxDelayMillis max delay between retries
+     * @param multiplier delay multiplier applied after each retry
+     * @param retryable condition to check failures, may be null to retry all failures
+     */
+    private TaskStageRetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis, double multiplier,
+                                 Retryable retryable) {
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.retryable = retryable;
+        this.retryableByClass = null != retryable && !overridesEquals(retryable);
+    }
+
+    /**
+     * Builder instance factory method
+     *
+     * @param maxAttempts max number of stage attempts including the first one
+     * @return {@link Builder} builder for policy
+     * @throws TaskEngineException on invalid input
+     */
+    public static Builder builder(int maxAttempts) throws TaskEngineException {
+        if(maxAttempts <= 0) throw new TaskEngineException("Provided maxAttempts: [" + maxAttempts + "] must be positive");
+        return new Builder(maxAttempts);
+    }
+
+    /**
+     * Whether failed stage attempt should be retried
+     *
+     * @param e stage failure
+     * @param attempt number of the failed attempt, starting from {@code 1}
+     * @return whether stage should be retried
+     */
+    public boolean shouldRetry(Exception e, int attempt) {
+        if(attempt >= maxAttempts) return false;
+        if(e instanceof TaskSuspendedException) return false;
+        return null == retryable || retryable.isRetryable(e);
+    }
+
+    /**
+     * Returns delay before the next attempt
+     *
+     * @param attempt number of the failed attempt, starting from {@code 1}
+     * @return delay in milliseconds
+     */
+    public long delayMillis(int attempt) {
+        double delay = initialDelayMillis * Math.pow(multiplier, attempt - 1);
+        return delay < maxDelayMillis ? (long) delay : maxDelayMillis;
+    }
+
+    /**
+     * Returns max number of stage attempts including the first one
+     *
+     * @return max number of stage attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TaskStageRetryPolicy other = (TaskStageRetryPolicy) o;
+        return sameSettings(other) && (null == retryable ? null == other.retryable : retryable.equals(other.retryable));
+    }
+
+    /**
+     * Equality check used on chain registration, conditions, that don't override {@code equals}
+     * (e.g. anonymous classes created on each {@link Task#stageChain()} call), are compared by class
+     *
+     * @param other other policy
+     * @return whether policies are equal
+     */
+    boolean sameAs(TaskStageRetryPolicy other) {
+        if (this == other) return true;
+        if (!sameSettings(other)) return false;
+        if (null == retryable || null == other.retryable) return null == retryable && null == other.retryable;
+        if (retryableByClass && other.retryableByClass) return retryable.getClass() == other.retryable.getClass();
+        return retryable.equals(other.retryable);
+    }
+
+    private boolean sameSettings(TaskStageRetryPolicy other) {
+        return maxAttempts == other.maxAttempts && initialDelayMillis == other.initialDelayMillis &&
+                maxDelayMillis == other.maxDelayMillis && Double.compare(multiplier, other.multiplier) == 0;
+    }
+
+    private static boolean overridesEquals(Retryable retryable) {
+        try {
+            return Object.class != retryable.getClass().getMethod("equals", Object.class).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int res = maxAttempts;
+        res = 31 * res + (int) (initialDelayMillis ^ (initialDelayMillis >>> 32));
+        res = 31 * res + (int) (maxDelayMillis ^ (maxDelayMillis >>> 32));
+        long mult = Double.doubleToLongBits(multiplier);
+        res = 31 * res + (int) (mult ^ (mult >>> 32));
+        return 31 * res + (null != retryable ? retryable.hashCode() : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TaskStageRetryPolicy{maxAttempts=" + maxAttempts + ", initialDelayMillis=" + initialDelayMillis +
+                ", maxDelayMillis=" + maxDelayMillis + ", multiplier=" + multiplier + "}";
+    }
+
+    /**
+     * Condition to check whether stage failure is transient and should be retried.
+     * Implementations must be serializable as they are referenced from stage chains.
+     * Implementations should override {@code equals}, if instances of the same class may check failures
+     * differently. Conditions without {@code equals} are compared by class on chain registration
+     * (see {@link TaskStageChain.Builder#register(String, int)}).
+     */
+    public interface Retryable extends Serializable {
+        /**
+         * Checks stage failure
+         *
+         * @param e stage failure
+         * @return whether failure is transient
+         */
+        boolean isRetryable(Exception e);
+    }
+
+    /**
+     * Builder class for {@link TaskStageRetryPolicy}, not thread-safe
+     */
+    public static class Builder {
+        private final int maxAttempts;
+        private long initialDelayMillis = 100;
+        private long maxDelayMillis = 10000;
+        private double multiplier = 2;
+        private Retryable retryable;
+
+        private Builder(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        /**
+         * Sets retry delays, defaults are {@code 100} and {@code 10000} millis
+         *
+         * @param initialDelayMillis delay before the first retry
+         * @param maxDelayMillis max delay between retries
+         * @return builder instance
+         */
+        public Builder backoff(long initialDelayMillis, long maxDelayMillis) {
+            if(initialDelayMillis < 0) throw new TaskEngineException(
+                    "Provided initialDelayMillis: [" + initialDelayMillis + "] must be non-negative");
+            if(maxDelayMillis < initialDelayMillis) throw new TaskEngineException("Provided maxDelayMillis: [" + maxDelayMillis + "] " +
+                    "must not be less than initialDelayMillis: [" + initialDelayMillis + "]");
+            this.initialDelayMillis = initialDelayMillis;
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets delay multiplier applied after each retry, default is {@code 2}
+         *
+         * @param multiplier delay multiplier, {@code 1} for fixed delays
+         * @return builder instance
+         */
+        public Builder multiplier(double multiplier) {
+            if(!(multiplier >= 1)) throw new TaskEngineException("Provided multiplier: [" + multiplier + "] must not be less than 1");
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Retries only failures of provided types (and their subtypes), all failures are retried by default
+         *
+         * @param types retryable exception types
+         * @return builder instance
+         */
+        public Builder retryOn(Class<?>... types) {
+            if(null == types || 0 == types.length) throw new TaskEngineException("Provided types are empty");
+            for(Class<?> cl : types) {
+                if(null == cl) throw new TaskEngineException("Provided type is null");
+            }
+            return retryIf(new TypesRetryable(types));
+        }
+
+        /**
+         * Retries only failures matching provided condition, all failures are retried by default
+         *
+         * @param retryable condition
+         * @return builder instance
+         */
+        public Builder retryIf(Retryable retryable) {
+            if(null == retryable) throw new TaskEngineException("Provided retryable is null");
+            this.retryable = retryable;
+            return this;
+        }
+
+        /**
+         * Creates policy instance
+         *
+         * @return policy instance
+         */
+        public TaskStageRetryPolicy build() {
+            return new TaskStageRetryPolicy(maxAttempts, initialDelayMillis, maxDelayMillis, multiplier, retryable);
+        }
+    }
+
+    private static class TypesRetryable implements Retryable {
+        private static final long serialVersionUID = 8573103648026472910L;
+        private final List<Class<?>> types;
+
+        private TypesRetryable(Class<?>[] types) {
+            this.types = new ArrayList<Class<?>>(types.length);
+            for(Class<?> cl : types) {
+                this.types.add(cl);
+            }
+        }
+
+        @Override
+        public boolean isRetryable(Exception e) {
+            for(Class<?> cl : types) {
+                if(cl.isInstance(e)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return types.equals(((TypesRetryable) o).types);
+        }
+
+        @Override
+        public int hashCode() {
+            return types.hashCode();
+        }
+    }
+}
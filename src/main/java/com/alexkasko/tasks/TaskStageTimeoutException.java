@@ -0,0 +1,38 @@
+package com.alexkasko.tasks;
+
+/**
+ * This exception will be thrown when stage processing exceeds its timeout,
+ * task is marked as errored with rollback to the last completed stage
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskStageChain.Builder#timeout(long)
+ * @see TaskEngine.Builder#stageTimeout(long)
+ */
+public class TaskStageTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 3388511296426912333L;
+
+    /**
+     * Constructor
+     *
+     * @param taskId task ID
+     * @param stage intermediate name of the timed out stage
+     * @param timeoutMillis stage timeout
+     */
+    public TaskStageTimeoutException(long taskId, String stage, long timeoutMillis) {
+        super("Task, id: [" + taskId + "] timed out on stage: [" + stage + "], timeout: [" + timeoutMillis + "] ms");
+    }
+
+    /**
+     * Constructor
+     *
+     * @param taskId task ID
+     * @param stage intermediate name of the timed out stage
+     * @param timeoutMillis stage timeout
+     * @param cause exception thrown by interrupted processor
+     */
+    public TaskStageTimeoutException(long taskId, String stage, long timeoutMillis, Throwable cause) {
+        this(taskId, stage, timeoutMillis);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,51 @@
+package com.alexkasko.tasks;
+
+/**
+ * {@link TaskManager} extension with coalesced stage transitions operations.
+ * If manager implements this interface, {@link TaskEngine} persists stage completion
+ * together with the next stage start (or with the 'success' status for the last stage)
+ * in a single call, so task with N stages costs N + 1 calls instead of 2N + 1.
+ * Stage rollback on suspension is persisted together with the 'suspended' status,
+ * so implementations may release task ownership on status change.
+ * Stage update, that follows status change of the same task (possible only outside of {@link TaskEngine},
+ * that persists such updates in a single call), must be called from the same thread as the status change:
+ * decorators (e.g. {@link BatchingTaskManager}) may use it to write such update through.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ * @see TaskManager
+ */
+public interface TaskTransitionManager<T extends Task> extends TaskManager<T> {
+    /**
+     * Marks stage completed and the next stage started, will be called between stages processing
+     * from stage-executor's thread only for tasks being in 'processing' status.
+     * Implementation should persist only {@code startedStage} as task stage,
+     * {@code completedStage} is provided for auditing purposes.
+     *
+     * @param taskId task id
+     * @param completedStage completed name of the just finished stage
+     * @param startedStage intermediate name of the next stage
+     */
+    void updateStageTransition(long taskId, String completedStage, String startedStage);
+
+    /**
+     * Changes task stage to the completed name of the last stage and task status to 'success'
+     * in a single operation, will be called after successful processing of last stage
+     * from stage-executor's thread only for tasks being in 'processing' status.
+     *
+     * @param taskId task id
+     * @param completedStage completed name of the last stage
+     */
+    void updateStageAndStatusSuccess(long taskId, String completedStage);
+
+    /**
+     * Changes task stage to the last completed stage and task status to 'suspended'
+     * in a single operation, will be called on task suspension
+     * from stage-executor's thread only for tasks being in 'processing' status.
+     *
+     * @param taskId task id
+     * @param lastCompletedStage completed name of the last completed stage
+     */
+    void updateStageAndStatusSuspended(long taskId, String lastCompletedStage);
+}
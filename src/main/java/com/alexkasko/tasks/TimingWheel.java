@@ -0,0 +1,187 @@
+package com.alexkasko.tasks;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel, runs timeout actions in single daemon thread with tick precision.
+ * Scheduling and cancellation are O(1) and don't take locks, so many short-living deadlines
+ * (most of them cancelled before expiry) stay cheap. New timeouts are handed over to the wheel
+ * thread through lock-free queue, cancelled timeouts are dropped on their bucket visit. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine.Builder#stageTimeout(long)
+ */
+class TimingWheel implements Runnable {
+    private static final Log logger = LogFactory.getLog(TimingWheel.class);
+
+    private final long tickNanos;
+    private final int mask;
+    // bucket heads, accessed only from wheel thread
+    private final Timeout[] wheel;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+    private final long startTime;
+    private final Thread thread;
+    private volatile boolean stopped = false;
+    // accessed only from wheel thread
+    private long tick = 0;
+
+    /**
+     * Constructor, starts wheel thread
+     *
+     * @param tickMillis wheel tick duration
+     * @param wheelSize number of buckets, rounded up to power of two
+     * @param threadName wheel thread name prefix
+     */
+    TimingWheel(long tickMillis, int wheelSize, String threadName) {
+        if(tickMillis <= 0) throw new TaskEngineException("Provided tickMillis: [" + tickMillis + "] must be positive");
+        if(wheelSize <= 0) throw new TaskEngineException("Provided wheelSize: [" + wheelSize + "] must be positive");
+        int size = 1;
+        while(size < wheelSize) size <<= 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = size - 1;
+        this.wheel = new Timeout[size];
+        this.startTime = System.nanoTime();
+        this.thread = new DaemonThreadFactory(threadName).newThread(this);
+        this.thread.start();
+    }
+
+    /**
+     * Schedules timeout action
+     *
+     * @param action action to run in wheel thread on expiry, must not block
+     * @param delayMillis delay before expiry
+     * @return timeout handle
+     */
+    Timeout schedule(Runnable action, long delayMillis) {
+        Timeout res = new Timeout(action, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        added.add(res);
+        return res;
+    }
+
+    /**
+     * Stops wheel thread, pending timeouts won't expire
+     */
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Wheel loop
+     */
+    @Override
+    public void run() {
+        while(!stopped) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            for(long left = deadline - System.nanoTime(); left > 0 && !stopped; left = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, left);
+            }
+            if(stopped) break;
+            transferAdded();
+            expireBucket((int) (tick & mask));
+            tick += 1;
+        }
+        logger.debug("Timing wheel stopped");
+    }
+
+    private void transferAdded() {
+        Timeout to;
+        while(null != (to = added.poll())) {
+            if(to.isCancelled()) continue;
+            long ticks = to.deadline / tickNanos;
+            to.rounds = (ticks - tick) / wheel.length;
+            // already expired timeouts go to the current bucket
+            int idx = (int) (Math.max(ticks, tick) & mask);
+            to.next = wheel[idx];
+            wheel[idx] = to;
+        }
+    }
+
+    private void expireBucket(int idx) {
+        Timeout prev = null;
+        Timeout to = wheel[idx];
+        while(null != to) {
+            Timeout next = to.next;
+            boolean remove = true;
+            if(!to.isCancelled()) {
+                if(to.rounds <= 0) {
+                    to.expire();
+                } else {
+                    to.rounds -= 1;
+                    remove = false;
+                }
+            }
+            if(remove) {
+                if(null == prev) wheel[idx] = next;
+                else prev.next = next;
+                to.next = null;
+            } else {
+                prev = to;
+            }
+            to = next;
+        }
+    }
+
+    /**
+     * Timeout handle
+     */
+    static class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRING = 2;
+        private static final int EXPIRED = 3;
+
+        private final Runnable action;
+        // nanos since wheel start
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // accessed only from wheel thread
+        private long rounds;
+        private Timeout next;
+
+        private Timeout(Runnable action, long deadline) {
+            this.action = action;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels timeout
+         *
+         * @return {@code true} if timeout was cancelled before expiry (maybe by previous call),
+         *         {@code false} if it's already expiring or expired
+         */
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED) || CANCELLED == state.get();
+        }
+
+        /**
+         * Waits (spinning) until expiry action of timeout, that cannot be cancelled, is finished
+         */
+        void awaitExpired() {
+            while(EXPIRED != state.get()) Thread.yield();
+        }
+
+        private boolean isCancelled() {
+            return CANCELLED == state.get();
+        }
+
+        private void expire() {
+            if(!state.compareAndSet(WAITING, EXPIRING)) return;
+            try {
+                action.run();
+            } catch (Exception e) {
+                logger.error("Error running timeout action", e);
+            } finally {
+                state.set(EXPIRED);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.alexkasko.tasks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter for single stage processor in the form of generic cell rate algorithm
+ * (equivalent of token bucket). Each call reserves the next free slot, so throttled callers
+ * get the exact delay to wait and don't need to retry. Thread-safe.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine.Builder#processorRate(String, double, int)
+ */
+class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    // theoretical arrival time of the next call
+    private final AtomicLong next;
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond max rate
+     * @param burst number of calls, that may be done at once after idle period
+     */
+    TokenBucket(double permitsPerSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.next = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Reserves slot for single call
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return nanos to wait before the call, zero if call may be done immediately
+     */
+    long reserve(long nowNanos) {
+        for(;;) {
+            long tat = next.get();
+            long base = tat - nowNanos > 0 ? tat : nowNanos;
+            if(next.compareAndSet(tat, base + intervalNanos)) {
+                long delay = base - nowNanos - toleranceNanos;
+                return delay > 0 ? delay : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class BatchingTaskManagerTest {
+    private final BatchDAO dao = new BatchDAO();
+    private final List<String> events = dao.events;
+
+    @Test
+    public void testStatusFlushesBuffer() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 100, 60000);
+        manager.updateStage(42, "running_data");
+        manager.updateStage(43, "running_data");
+        manager.updateStage(42, "data_loaded");
+        assertEquals("Buffer fail", 0, events.size());
+        manager.updateStatusSuspended(42);
+        assertEquals("Flush fail", ImmutableList.of("stages.[42, 43].[data_loaded, running_data]", "status.suspended"), events);
+        manager.close();
+    }
+
+    @Test
+    public void testSizeThreshold() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 2, 60000);
+        manager.updateStage(42, "running_data");
+        assertEquals("Buffer fail", 0, events.size());
+        manager.updateStage(43, "running_data");
+        assertEquals("Threshold fail", ImmutableList.of("stages.[42, 43].[running_data, running_data]"), events);
+        manager.close();
+    }
+
+    @Test
+    public void testIntervalFlush() throws InterruptedException {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 100, 10);
+        manager.updateStage(42, "running_data");
+        for(int i = 0; i < 100 && events.isEmpty(); i++) Thread.sleep(10);
+        assertEquals("Interval fail", ImmutableList.of("stages.[42].[running_data]"), events);
+        manager.close();
+    }
+
+    @Test
+    public void testCloseFlushes() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 100, 60000);
+        manager.updateStageTransition(42, "data_loaded", "running_reports");
+        manager.close();
+        assertEquals("Close fail", ImmutableList.of("stages.[42].[running_reports]"), events);
+    }
+
+    @Test
+    public void testStageAfterStatusWrittenThrough() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 100, 60000);
+        manager.updateStage(42, "running_data");
+        manager.updateStatusSuspended(42);
+        manager.updateStage(42, "created");
+        manager.updateStage(42, "running_data");
+        assertEquals("Write through fail", ImmutableList.of(
+                "stages.[42].[running_data]",
+                "status.suspended",
+                "stage.created"), events);
+        manager.close();
+    }
+
+    @Test
+    public void testFailedFlushRetried() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 100, 60000);
+        manager.updateStage(42, "running_data");
+        dao.failures = 1;
+        try {
+            manager.flush();
+            throw new AssertionError("Flush fail");
+        } catch (TaskEngineException e) {
+            // expected
+        }
+        manager.updateStage(43, "running_data");
+        manager.updateStage(42, "data_loaded");
+        assertEquals("Retry fail", 2, manager.flush());
+        assertEquals("Retry fail", ImmutableList.of("stages.[42, 43].[data_loaded, running_data]"), events);
+        manager.close();
+    }
+
+    @Test
+    public void testStatusFailsOnUnwrittenStage() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(dao, 100, 60000);
+        manager.updateStage(42, "running_data");
+        dao.failures = 1;
+        try {
+            manager.updateStatusSuspended(42);
+            throw new AssertionError("Status fail");
+        } catch (TaskEngineException e) {
+            // expected
+        }
+        manager.updateStatusSuspended(42);
+        assertEquals("Status fail", ImmutableList.of("stages.[42].[running_data]", "status.suspended"), events);
+        manager.close();
+    }
+
+    @Test
+    public void testWrapKeepsInterfaces() {
+        BatchingTaskManager<Task> plain = BatchingTaskManager.wrap(dao, 100, 60000);
+        assertFalse("Bounded fail", plain instanceof BoundedTaskManager);
+        assertFalse("Streaming fail", plain instanceof StreamingTaskManager);
+        plain.close();
+        BatchingTaskManager<Task> bounded = BatchingTaskManager.wrap(new BoundedDAO(), 100, 60000);
+        assertTrue("Bounded fail", bounded instanceof BoundedTaskManager);
+        assertEquals("Limit fail", 1, ((BoundedTaskManager<?>) bounded).markProcessingAndLoad(1).size());
+        bounded.close();
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testCapacityRequiresBounded() {
+        BatchingTaskManager<Task> manager = new BatchingTaskManager<Task>(new BoundedDAO(), 100, 60000);
+        try {
+            TaskEngine.builder(MoreExecutors.sameThreadExecutor(), manager, new TestProcessorProvider())
+                    .capacity(10)
+                    .build();
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static class BatchDAO extends TestTaskManager implements TaskBatchManager<Task> {
+        private int failures = 0;
+
+        @Override
+        public void updateStages(long[] taskIds, String[] stages) {
+            if(failures > 0) {
+                failures -= 1;
+                throw new RuntimeException("Write failed");
+            }
+            events.add("stages." + Arrays.toString(taskIds) + "." + Arrays.toString(stages));
+        }
+    }
+
+    private static class BoundedDAO extends TestTaskManager implements BoundedTaskManager<Task> {
+        @Override
+        public Collection<? extends Task> markProcessingAndLoad(int limit) {
+            return ImmutableList.of(new TestTask(42));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.alexkasko.tasks;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class ConcurrentLongHashSetTest {
+
+    @Test
+    public void testOperations() {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet();
+        assertFalse("Empty remove fail", set.remove(42));
+        assertTrue("Add fail", set.add(42));
+        assertFalse("Duplicate add fail", set.add(42));
+        assertTrue("Zero add fail", set.add(0));
+        assertTrue("Negative add fail", set.add(-1));
+        assertEquals("Size fail", 3, set.size());
+        assertTrue("Contains fail", set.contains(0));
+        assertTrue("Remove fail", set.remove(42));
+        assertFalse("Double remove fail", set.remove(42));
+        assertFalse("Contains fail", set.contains(42));
+        assertEquals("Size fail", 2, set.size());
+    }
+
+    @Test
+    public void testGrowthAndReuse() {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet();
+        for(int round = 0; round < 3; round++) {
+            for(long i = 0; i < 10000; i++) assertTrue("Add fail", set.add(i * 31));
+            assertEquals("Size fail", 10000, set.size());
+            for(long i = 0; i < 10000; i++) assertTrue("Contains fail", set.contains(i * 31));
+            assertFalse("Contains fail", set.contains(1));
+            for(long i = 0; i < 10000; i++) assertTrue("Remove fail", set.remove(i * 31));
+            assertEquals("Size fail", 0, set.size());
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final ConcurrentLongHashSet set = new ConcurrentLongHashSet();
+        final int threads = 8;
+        final int perThread = 5000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for(int t = 0; t < threads; t++) {
+            final long base = t * perThread;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(long i = base; i < base + perThread; i++) set.add(i);
+                    for(long i = base; i < base + perThread; i += 2) set.remove(i);
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        assertEquals("Size fail", threads * perThread / 2, set.size());
+        for(long i = 0; i < threads * perThread; i++) assertEquals("Contains fail", 1 == i % 2, set.contains(i));
+    }
+}
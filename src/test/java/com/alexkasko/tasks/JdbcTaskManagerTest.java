@@ -0,0 +1,290 @@
+package com.alexkasko.tasks;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class JdbcTaskManagerTest {
+    private static final int TASKS_COUNT = 2000;
+    private static final int NODES_COUNT = 4;
+
+    private final AtomicIntegerArray processed = new AtomicIntegerArray(TASKS_COUNT * 2);
+    private final AtomicInteger total = new AtomicInteger();
+    private JdbcConnectionPool pool;
+    private volatile TaskEngine engine;
+    private volatile boolean suspendData = false;
+
+    @Before
+    public void setUp() throws SQLException {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:jdbc_manager_test;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        pool.setMaxConnections(64);
+        execute("drop table if exists tasks");
+        execute("create table tasks(id bigint primary key, stage varchar(255), status varchar(255), " +
+                "lease_owner varchar(255), lease_expiry bigint)");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        execute("drop table tasks");
+        pool.dispose();
+    }
+
+    @Test
+    public void testMultipleNodes() throws Exception {
+        insert(TASKS_COUNT, "created", "NORMAL", null, 0);
+        List<TaskEngine> engines = new ArrayList<TaskEngine>();
+        List<JdbcTaskManager<TestTask>> managers = new ArrayList<JdbcTaskManager<TestTask>>();
+        ExecutorService executor = Executors.newFixedThreadPool(NODES_COUNT * 2);
+        for(int i = 0; i < NODES_COUNT; i++) {
+            // nodes with different claim modes compete for the same tasks
+            JdbcTaskManager.ClaimMode mode = 0 == i % 2 ? JdbcTaskManager.ClaimMode.AUTO : JdbcTaskManager.ClaimMode.OPTIMISTIC;
+            JdbcTaskManager<TestTask> manager = manager("node" + i, mode);
+            TaskEngine engine = TaskEngine.builder(executor, manager, new Provider())
+                    .capacity(50)
+                    .build();
+            engine.startPolling(5, 20);
+            managers.add(manager);
+            engines.add(engine);
+        }
+        for(int i = 0; i < 1000 && total.get() < TASKS_COUNT * 2; i++) Thread.sleep(10);
+        for(int i = 0; i < NODES_COUNT; i++) {
+            assertTrue("Drain fail", engines.get(i).shutdown(10000).isDrained());
+            assertEquals("Leases fail", 0, managers.get(i).leasedCount());
+            managers.get(i).close();
+        }
+        executor.shutdown();
+        for(int i = 0; i < TASKS_COUNT * 2; i++) {
+            assertEquals("Processing count fail, task: [" + i / 2 + "]", 1, processed.get(i));
+        }
+        assertEquals("Status fail", TASKS_COUNT, count("select count(*) from tasks where status = 'NORMAL' " +
+                "and stage = 'finished' and lease_owner is null"));
+    }
+
+    @Test
+    public void testSuspendResume() throws Exception {
+        insert(1, "created", "NORMAL", null, 0);
+        JdbcTaskManager<TestTask> manager = manager("node");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        engine = new TaskEngine(executor, manager, new Provider());
+        suspendData = true;
+        assertEquals("Fire fail", 1, engine.fire());
+        for(int i = 0; i < 1000 && engine.inFlight() > 0; i++) Thread.sleep(10);
+        // intermediate stage is rolled back together with suspended status
+        assertEquals("Suspend fail", 1, count("select count(*) from tasks where status = 'SUSPENDED' " +
+                "and stage = 'created' and lease_owner is null"));
+        assertEquals("Leases fail", 0, manager.leasedCount());
+        execute("update tasks set status = 'NORMAL'");
+        suspendData = false;
+        assertEquals("Resume fail", 1, engine.fire());
+        for(int i = 0; i < 1000 && engine.inFlight() > 0; i++) Thread.sleep(10);
+        assertTrue("Drain fail", engine.shutdown(10000).isDrained());
+        manager.close();
+        executor.shutdown();
+        assertEquals("Rerun fail", 2, processed.get(0));
+        assertEquals("Rerun fail", 1, processed.get(1));
+        assertEquals("Status fail", 1, count("select count(*) from tasks where status = 'NORMAL' " +
+                "and stage = 'finished' and lease_owner is null"));
+    }
+
+    @Test
+    public void testReclaimExpired() throws Exception {
+        // interrupted in the middle of the first stage by crashed node
+        insert(1, "running_data", "PROCESSING", "dead", System.currentTimeMillis() - 1);
+        insert(1, "running_data", "PROCESSING", "alive", System.currentTimeMillis() + 60000);
+        JdbcTaskManager<TestTask> manager = manager("node");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TaskEngine engine = new TaskEngine(executor, manager, new Provider());
+        assertEquals("Fire fail", 1, engine.fire());
+        for(int i = 0; i < 1000 && engine.inFlight() > 0; i++) Thread.sleep(10);
+        assertTrue("Drain fail", engine.shutdown(10000).isDrained());
+        manager.close();
+        executor.shutdown();
+        assertEquals("Rerun fail", 1, processed.get(0));
+        assertEquals("Rerun fail", 1, processed.get(1));
+        assertEquals("Status fail", 1, count("select count(*) from tasks where status = 'NORMAL' and stage = 'finished'"));
+        assertEquals("Alive fail", 1, count("select count(*) from tasks where lease_owner = 'alive'"));
+    }
+
+    @Test
+    public void testLeaseLost() throws Exception {
+        insert(1, "created", "NORMAL", null, 0);
+        final List<Long> lost = new ArrayList<Long>();
+        JdbcTaskManager<TestTask> manager = JdbcTaskManager.builder(pool, new Mapper())
+                .nodeId("node")
+                .claimable("status = 'NORMAL' and stage = 'created'")
+                .leaseListener(new JdbcTaskManager.LeaseListener() {
+                    @Override
+                    public void leaseLost(long taskId) {
+                        lost.add(taskId);
+                    }
+                })
+                .build();
+        assertEquals("Claim fail", 1, manager.markProcessingAndLoad().size());
+        assertEquals("Renew fail", 1, manager.renewLeases());
+        execute("update tasks set lease_owner = 'other'");
+        assertEquals("Renew fail", 0, manager.renewLeases());
+        assertEquals("Leases fail", 0, manager.leasedCount());
+        assertEquals("Listener fail", 1, lost.size());
+        try {
+            manager.updateStage(0, "running_data");
+            throw new AssertionError("Lease check fail");
+        } catch(TaskEngineException e) {
+            // expected
+        } finally {
+            manager.close();
+        }
+        assertEquals("Claim fail", 0, manager.markProcessingAndLoad().size());
+    }
+
+    @Test
+    public void testMapperFailure() throws Exception {
+        insert(1, "created", "NORMAL", null, 0);
+        JdbcTaskManager<TestTask> manager = JdbcTaskManager.builder(pool, new JdbcTaskManager.TaskMapper<TestTask>() {
+            @Override
+            public TestTask map(ResultSet rs) throws SQLException {
+                throw new IllegalStateException("Mapping failed");
+            }
+        }).nodeId("node").claimMode(JdbcTaskManager.ClaimMode.OPTIMISTIC)
+                .claimable("status = 'NORMAL' and stage = 'created'").build();
+        try {
+            manager.markProcessingAndLoad();
+            throw new AssertionError("Mapper fail");
+        } catch(IllegalStateException e) {
+            // expected
+        } finally {
+            manager.close();
+        }
+        // connection is returned to pool in auto-commit mode
+        assertEquals("Pool fail", 0, pool.getActiveConnections());
+        Connection conn = pool.getConnection();
+        try {
+            assertTrue("Auto-commit fail", conn.getAutoCommit());
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testDefaultClaimableColumns() throws Exception {
+        execute("create table custom_tasks(task_id bigint primary key, task_stage varchar(255), task_status varchar(255), " +
+                "owner varchar(255), expiry bigint)");
+        try {
+            execute("insert into custom_tasks(task_id, task_stage, task_status) values(42, 'CREATED', 'NORMAL')");
+            JdbcTaskManager<TestTask> manager = JdbcTaskManager.builder(pool, new JdbcTaskManager.TaskMapper<TestTask>() {
+                @Override
+                public TestTask map(ResultSet rs) throws SQLException {
+                    return new TestTask(rs.getLong("task_id"), rs.getString("task_stage"), TestTask.CHAIN);
+                }
+            }).nodeId("node").table("custom_tasks", "task_id", "task_stage", "task_status", "owner", "expiry").build();
+            try {
+                assertEquals("Claim fail", 1, manager.markProcessingAndLoad().size());
+            } finally {
+                manager.close();
+            }
+        } finally {
+            execute("drop table custom_tasks");
+        }
+    }
+
+    private JdbcTaskManager<TestTask> manager(String nodeId) {
+        return manager(nodeId, JdbcTaskManager.ClaimMode.AUTO);
+    }
+
+    private JdbcTaskManager<TestTask> manager(String nodeId, JdbcTaskManager.ClaimMode mode) {
+        return JdbcTaskManager.builder(pool, new Mapper())
+                .nodeId(nodeId)
+                .claimMode(mode)
+                .claimable("status = 'NORMAL' and stage = 'created'")
+                .build();
+    }
+
+    private void insert(int count, String stage, String status, String owner, long expiry) throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            int offset = count("select count(*) from tasks");
+            PreparedStatement ps = conn.prepareStatement("insert into tasks(id, stage, status, lease_owner, lease_expiry) " +
+                    "values(?, ?, ?, ?, ?)");
+            for(int i = 0; i < count; i++) {
+                ps.setLong(1, offset + i);
+                ps.setString(2, stage);
+                ps.setString(3, status);
+                ps.setString(4, owner);
+                ps.setLong(5, expiry);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            ps.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            Statement st = conn.createStatement();
+            st.execute(sql);
+            st.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection conn = pool.getConnection();
+        try {
+            Statement st = conn.createStatement();
+            ResultSet rs = st.executeQuery(sql);
+            rs.next();
+            int res = rs.getInt(1);
+            st.close();
+            return res;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static class Mapper implements JdbcTaskManager.TaskMapper<TestTask> {
+        @Override
+        public TestTask map(ResultSet rs) throws SQLException {
+            return new TestTask(rs.getLong("id"), rs.getString("stage"), TestTask.CHAIN);
+        }
+    }
+
+    private class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(final String id) {
+            return new TaskStageProcessor() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    processed.incrementAndGet((int) taskId * 2 + ("DataProcessor".equals(id) ? 0 : 1));
+                    total.incrementAndGet();
+                    if(suspendData && "DataProcessor".equals(id)) {
+                        engine.suspend(taskId);
+                        engine.checkSuspended(taskId);
+                    }
+                }
+            };
+        }
+    }
+}
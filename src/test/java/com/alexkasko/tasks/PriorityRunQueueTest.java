@@ -0,0 +1,74 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class PriorityRunQueueTest {
+    private final List<String> events = Lists.newArrayList();
+
+    @Test
+    public void testRejectedTakenEntry() {
+        RacingExecutor executor = new RacingExecutor();
+        PriorityRunQueue queue = new PriorityRunQueue(executor, 1000000000L);
+        queue.execute(new NamedRunnable("low"), 0);
+        // first token takes high priority entry, then second token is rejected
+        queue.execute(new NamedRunnable("high"), 10);
+        assertEquals("Run fail", ImmutableList.of("high", "low"), events);
+        assertEquals("Size fail", 0, queue.size());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejected() {
+        PriorityRunQueue queue = new PriorityRunQueue(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 1000000000L);
+        try {
+            queue.execute(new NamedRunnable("rejected"), 0);
+        } finally {
+            assertEquals("Run fail", 0, events.size());
+            assertEquals("Size fail", 0, queue.size());
+        }
+    }
+
+    private class NamedRunnable implements Runnable {
+        private final String name;
+
+        private NamedRunnable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            events.add(name);
+        }
+    }
+
+    // keeps first token and runs it on second submission, rejecting the second one
+    private static class RacingExecutor implements Executor {
+        private Runnable first;
+
+        @Override
+        public void execute(Runnable command) {
+            if(null == first) {
+                first = command;
+                return;
+            }
+            first.run();
+            throw new RejectedExecutionException();
+        }
+    }
+}
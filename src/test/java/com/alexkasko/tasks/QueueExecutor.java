@@ -0,0 +1,39 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor used in tests, queues commands to be run by test thread. Not thread-safe.
+ *
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+class QueueExecutor implements Executor {
+    private final List<Runnable> queued = Lists.newArrayList();
+
+    @Override
+    public void execute(Runnable command) {
+        queued.add(command);
+    }
+
+    int size() {
+        return queued.size();
+    }
+
+    /**
+     * Runs first queued command
+     */
+    void runNext() {
+        queued.remove(0).run();
+    }
+
+    /**
+     * Runs queued commands including ones queued while running
+     */
+    void runAll() {
+        while(!queued.isEmpty()) runNext();
+    }
+}
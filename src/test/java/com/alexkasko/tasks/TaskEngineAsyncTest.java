@@ -0,0 +1,149 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.synchronizedList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineAsyncTest {
+    private final TestTaskManager manager = new TestTaskManager(new TestTask(42));
+    private final List<String> events = manager.events;
+    private final List<TaskStageFuture> futures = synchronizedList(Lists.<TaskStageFuture>newArrayList());
+    private final TestProcessorProvider provider = new TestProcessorProvider(asyncProcessor())
+            .add("ReportsProcessor", new TaskStageProcessor() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    events.add("process." + taskId);
+                }
+            });
+    private final TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), manager, provider);
+    private TaskStageFuture returned;
+
+    @Test
+    public void testResume() {
+        engine.fire();
+        assertEquals("Pending events fail", ImmutableList.of(
+                "stage.running_data",
+                "async.42"), events);
+        assertEquals("In flight fail", 1, engine.inFlight());
+        futures.get(0).complete();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "async.42",
+                "stage.data_loaded",
+                "stage.running_reports",
+                "process.42",
+                "stage.finished",
+                "status.success"), events);
+        assertEquals("In flight fail", 0, engine.inFlight());
+    }
+
+    @Test
+    public void testError() {
+        engine.fire();
+        futures.get(0).fail(new Exception("Test failure"));
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "async.42",
+                "error.created"), events);
+        assertEquals("In flight fail", 0, engine.inFlight());
+    }
+
+    @Test
+    public void testSuspend() {
+        engine.fire();
+        assertTrue("Suspend fail", engine.suspend(42));
+        futures.get(0).fail(new TaskSuspendedException(42));
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "async.42",
+                "status.suspended",
+                "stage.created"), events);
+        assertEquals("In flight fail", 0, engine.inFlight());
+    }
+
+    @Test
+    public void testCompletedSynchronously() {
+        returned = TaskStageFuture.completed();
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "async.42",
+                "stage.data_loaded",
+                "stage.running_reports",
+                "process.42",
+                "stage.finished",
+                "status.success"), events);
+    }
+
+    @Test
+    public void testPool() throws InterruptedException {
+        int count = 100;
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            TaskEngine poolEngine = new TaskEngine(executor, new TestTaskManager() {
+                @Override
+                public void updateStatusSuccess(long taskId) {
+                    succeeded.incrementAndGet();
+                    super.updateStatusSuccess(taskId);
+                }
+
+                @Override
+                void finished(long taskId) {
+                    latch.countDown();
+                }
+            }, provider);
+            for(int i = 0; i < count; i++) {
+                poolEngine.submit(new TestTask(i));
+            }
+            // all tasks are pending at the same time on two threads
+            int completed = 0;
+            while(completed < count) {
+                if(completed < futures.size()) {
+                    futures.get(completed).complete();
+                    completed += 1;
+                } else {
+                    Thread.sleep(1);
+                }
+            }
+            assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+            assertEquals("Success fail", count, succeeded.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private TaskStageProcessor asyncProcessor() {
+        return new AsyncTaskStageProcessor() {
+            @Override
+            public TaskStageFuture processAsync(long taskId) throws Exception {
+                events.add("async." + taskId);
+                TaskStageFuture future = null != returned ? returned : new TaskStageFuture();
+                futures.add(future);
+                return future;
+            }
+
+            @Override
+            public void process(long taskId) throws Exception {
+                throw new AssertionError("Must not be called");
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package com.alexkasko.tasks;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineBulkheadTest {
+    private static final int SLOW_COUNT = 10;
+    private static final int FAST_COUNT = 20;
+
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+    private final CountDownLatch slowDone = new CountDownLatch(SLOW_COUNT);
+    private final CountDownLatch fastDone = new CountDownLatch(FAST_COUNT);
+    private final AtomicInteger slowActive = new AtomicInteger();
+    private final AtomicInteger slowMaxActive = new AtomicInteger();
+
+    @Test
+    public void testParking() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            TaskEngine engine = TaskEngine.builder(executor, manager(), provider())
+                    .processorConcurrency("SlowProcessor", 2)
+                    .build();
+            for(int i = 0; i < SLOW_COUNT; i++) {
+                engine.submit(new TestTask(i, TestTask.singleStage("SlowProcessor")));
+            }
+            for(int i = SLOW_COUNT; i < SLOW_COUNT + FAST_COUNT; i++) {
+                engine.submit(new TestTask(i, TestTask.singleStage("FastProcessor")));
+            }
+            // two slow stages hold two threads, parked slow tasks don't hold the third one
+            assertTrue("Fast fail", fastDone.await(10, TimeUnit.SECONDS));
+            assertFalse("Slow fail", slowDone.await(100, TimeUnit.MILLISECONDS));
+            slowRelease.countDown();
+            assertTrue("Slow timeout fail", slowDone.await(10, TimeUnit.SECONDS));
+            assertEquals("Concurrency fail", 2, slowMaxActive.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testHandOver() {
+        Bulkhead bh = new Bulkhead(1);
+        final AtomicInteger resumed = new AtomicInteger();
+        Runnable resumer = new Runnable() {
+            @Override
+            public void run() {
+                resumed.incrementAndGet();
+            }
+        };
+        assertTrue("Acquire fail", bh.acquire(resumer));
+        assertFalse("Park fail", bh.acquire(resumer));
+        assertEquals("Parked fail", 1, bh.parked());
+        Runnable next = bh.release();
+        assertEquals("Hand over fail", resumer, next);
+        assertEquals("Parked fail", 0, bh.parked());
+        // permit is held by resumed task
+        assertFalse("Park fail", bh.acquire(resumer));
+        bh.release().run();
+        assertEquals("Release fail", null, bh.release());
+        assertTrue("Acquire fail", bh.acquire(resumer));
+        assertEquals("Resumed fail", 1, resumed.get());
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testInvalidLimit() {
+        TaskEngine.builder(Executors.newSingleThreadExecutor(), manager(), provider())
+                .processorConcurrency("SlowProcessor", 0);
+    }
+
+    private TestTaskManager manager() {
+        return new TestTaskManager() {
+            @Override
+            void finished(long taskId) {
+                if(taskId < SLOW_COUNT) {
+                    slowDone.countDown();
+                } else {
+                    fastDone.countDown();
+                }
+            }
+        };
+    }
+
+    private TestProcessorProvider provider() {
+        return new TestProcessorProvider(new TaskStageProcessor() {
+            @Override
+            public void process(long taskId) throws Exception {
+                int active = slowActive.incrementAndGet();
+                int max = slowMaxActive.get();
+                while(active > max && !slowMaxActive.compareAndSet(max, active)) max = slowMaxActive.get();
+                slowRelease.await();
+                slowActive.decrementAndGet();
+            }
+        }).add("FastProcessor", TestProcessorProvider.NOOP);
+    }
+}
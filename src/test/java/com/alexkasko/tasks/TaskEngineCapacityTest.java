@@ -0,0 +1,89 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineCapacityTest {
+    private final List<Integer> limits = newArrayList();
+    private final QueueExecutor executor = new QueueExecutor();
+
+    @Test
+    public void testRefireOnFreeSlot() {
+        BoundedDAO dao = new BoundedDAO(10);
+        TaskEngine engine = TaskEngine.builder(executor, dao, new TestProcessorProvider())
+                .capacity(3)
+                .build();
+        assertEquals("Fire fail", 3, engine.fire());
+        assertEquals("In flight fail", 3, engine.inFlight());
+        // no free slots, nothing should be claimed
+        assertEquals("Fire fail", 0, engine.fire());
+        executor.runNext();
+        assertEquals("Refire fail", 3, engine.inFlight());
+        executor.runNext();
+        executor.runNext();
+        assertEquals("Limits fail", ImmutableList.of(3, 1, 1, 1), limits);
+        assertEquals("Remaining fail", 4, dao.remaining);
+    }
+
+    @Test
+    public void testNoRefireWithoutBacklog() {
+        BoundedDAO dao = new BoundedDAO(2);
+        TaskEngine engine = TaskEngine.builder(executor, dao, new TestProcessorProvider())
+                .capacity(3)
+                .build();
+        assertEquals("Fire fail", 2, engine.fire());
+        executor.runNext();
+        executor.runNext();
+        assertEquals("Limits fail", ImmutableList.of(3), limits);
+        assertEquals("In flight fail", 0, engine.inFlight());
+    }
+
+    @Test
+    public void testSameThreadExecutor() {
+        BoundedDAO dao = new BoundedDAO(10);
+        TaskEngine engine = TaskEngine.builder(MoreExecutors.sameThreadExecutor(), dao, new TestProcessorProvider())
+                .capacity(3)
+                .build();
+        assertEquals("Fire fail", 10, engine.fire());
+        assertEquals("Limits fail", ImmutableList.of(3, 3, 3, 3), limits);
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testUnboundedManager() {
+        TaskEngine.builder(executor, new TestTaskManager(), new TestProcessorProvider())
+                .capacity(3)
+                .build();
+    }
+
+    private class BoundedDAO extends TestTaskManager implements BoundedTaskManager<Task> {
+        private int remaining;
+        private long nextId = 42;
+
+        private BoundedDAO(int remaining) {
+            this.remaining = remaining;
+        }
+
+        @Override
+        public Collection<? extends Task> markProcessingAndLoad(int limit) {
+            limits.add(limit);
+            List<Task> res = new ArrayList<Task>();
+            for(int i = 0; i < limit && remaining > 0; i++) {
+                res.add(new TestTask(nextId++, TestTask.singleStage("NoopProcessor")));
+                remaining -= 1;
+            }
+            return res;
+        }
+    }
+}
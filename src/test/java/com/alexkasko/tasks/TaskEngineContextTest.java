@@ -0,0 +1,87 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineContextTest {
+    private final TestTaskManager manager = new TestTaskManager(new TestTask(42));
+    private final List<String> events = manager.events;
+    private final TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), manager, provider());
+    private boolean suspendOnReports = false;
+
+    @Test
+    public void testMetadata() {
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "process.42.running_data.data_loaded.DataProcessor.1",
+                "stage.data_loaded",
+                "stage.running_reports",
+                "process.42.running_reports.finished.ReportsProcessor.2",
+                "stage.finished",
+                "status.success"), events);
+    }
+
+    @Test
+    public void testSuspend() {
+        suspendOnReports = true;
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "process.42.running_data.data_loaded.DataProcessor.1",
+                "stage.data_loaded",
+                "stage.running_reports",
+                "process.42.running_reports.finished.ReportsProcessor.2",
+                "status.suspended",
+                "stage.data_loaded"), events);
+    }
+
+    @Test
+    public void testSuspendConsumedByEngine() {
+        TaskContext context = new TaskContext(engine, 43);
+        assertFalse("Suspended fail", context.isSuspended());
+        engine.suspend(43);
+        context.markSuspended();
+        engine.checkSuspended(44);
+        try {
+            engine.checkSuspended(43);
+        } catch (TaskSuspendedException e) {
+            // expected
+        }
+        assertTrue("Suspended fail", context.isSuspended());
+        // suspension is already consumed, must not throw
+        context.checkSuspended();
+        assertFalse("Suspended fail", context.isSuspended());
+    }
+
+    private TestProcessorProvider provider() {
+        return new TestProcessorProvider(new ContextualTaskStageProcessor() {
+            @Override
+            public void process(TaskContext context) throws Exception {
+                events.add("process." + context.getTaskId() + "." + context.getStageName() + "." +
+                        context.getCompletedStageName() + "." + context.getProcessorId() + "." + context.getStageOrdinal());
+                if(suspendOnReports && "ReportsProcessor".equals(context.getProcessorId())) {
+                    engine.suspend(context.getTaskId());
+                    assertTrue("Suspended fail", context.isSuspended());
+                }
+                context.checkSuspended();
+            }
+
+            @Override
+            public void process(long taskId) throws Exception {
+                throw new AssertionError("Must not be called");
+            }
+        });
+    }
+}
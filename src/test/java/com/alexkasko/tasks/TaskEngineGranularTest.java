@@ -0,0 +1,86 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.synchronizedList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineGranularTest {
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_a", "finished_a", "a")
+            .add("running_b", "finished_b", "b")
+            .add("running_c", "finished_c", "c")
+            .build();
+
+    private final List<String> processed = synchronizedList(Lists.<String>newArrayList());
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private final CountDownLatch latch = new CountDownLatch(2);
+    private final TestTaskManager manager = new TestTaskManager() {
+        @Override
+        void finished(long taskId) {
+            latch.countDown();
+        }
+    };
+    private final TaskProcessorProvider provider = new TaskProcessorProvider() {
+        @Override
+        public TaskStageProcessor provide(final String id) {
+            return new TaskStageProcessor() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    processed.add(taskId + "." + id);
+                }
+            };
+        }
+    };
+
+    @Test
+    public void testRoundRobin() throws InterruptedException {
+        assertEquals("Order fail", ImmutableList.of("1.a", "2.a", "1.b", "2.b", "1.c", "2.c"),
+                run(TaskEngine.builder(executor, manager, provider).stageGranular()));
+    }
+
+    @Test
+    public void testWholeTask() throws InterruptedException {
+        assertEquals("Order fail", ImmutableList.of("1.a", "1.b", "1.c", "2.a", "2.b", "2.c"),
+                run(TaskEngine.builder(executor, manager, provider)));
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private List<String> run(TaskEngine.Builder builder) throws InterruptedException {
+        try {
+            TaskEngine engine = builder.build();
+            // occupies the only thread until both tasks are submitted
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            engine.submit(new TestTask(1, CHAIN));
+            engine.submit(new TestTask(2, CHAIN));
+            blocker.countDown();
+            assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+            return processed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.alexkasko.tasks.TaskEngineMetrics.ManagerCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineMetricsTest {
+    private final TestProcessorProvider provider = new TestProcessorProvider(new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+            if(43 == taskId) throw new Exception("Test failure");
+        }
+    }).add("DataProcessor", new ListenableProcessor());
+
+    @Test
+    public void testMetrics() {
+        HistogramTaskEngineMetrics metrics = new HistogramTaskEngineMetrics();
+        TaskEngine engine = TaskEngine.builder(MoreExecutors.sameThreadExecutor(),
+                new TestTaskManager(new TestTask(42), new TestTask(43)), provider)
+                .metrics(metrics)
+                .build();
+        assertEquals("Fire fail", 2, engine.fire());
+        assertEquals("Dispatched fail", 2, metrics.getDispatched());
+        assertEquals("Finished fail", 2, metrics.getFinished());
+        assertEquals("In flight fail", 0, metrics.getInFlight());
+        assertEquals("Queue wait fail", 2, metrics.getQueueWait().getCount());
+        assertEquals("Load fail", 1, metrics.getManagerCallTime(ManagerCall.MARK_PROCESSING_AND_LOAD).getCount());
+        assertEquals("Stage fail", 7, metrics.getManagerCallTime(ManagerCall.UPDATE_STAGE).getCount());
+        assertEquals("Success fail", 1, metrics.getManagerCallTime(ManagerCall.UPDATE_STATUS_SUCCESS).getCount());
+        assertEquals("Error fail", 1, metrics.getManagerCallTime(ManagerCall.UPDATE_STATUS_ERROR).getCount());
+        assertEquals("Manager errors fail", 0, metrics.getManagerErrors());
+        HistogramTaskEngineMetrics.ProcessorMetrics data = metrics.getProcessorMetrics("DataProcessor");
+        assertEquals("Data succeeded fail", 2, data.getSucceeded());
+        assertEquals("Data failed fail", 0, data.getFailed());
+        assertEquals("Data listeners fail", 4, data.getListenersTime().getCount());
+        assertEquals("Data in flight fail", 0, data.getInFlight());
+        HistogramTaskEngineMetrics.ProcessorMetrics reports = metrics.getProcessorMetrics("ReportsProcessor");
+        assertEquals("Reports succeeded fail", 1, reports.getSucceeded());
+        assertEquals("Reports failed fail", 1, reports.getFailed());
+        assertTrue("Reports time fail", reports.getProcessingTime().getMax() >= 0);
+    }
+
+    @Test
+    public void testCursorMetrics() {
+        HistogramTaskEngineMetrics metrics = new HistogramTaskEngineMetrics();
+        TaskEngine engine = TaskEngine.builder(MoreExecutors.sameThreadExecutor(),
+                new StreamingDAO(new TestTask(42), new TestTask(44)), provider)
+                .metrics(metrics)
+                .build();
+        assertEquals("Fire fail", 2, engine.fire());
+        assertEquals("Open fail", 1, metrics.getManagerCallTime(ManagerCall.OPEN_CURSOR).getCount());
+        // two tasks and exhaustion
+        assertEquals("Next fail", 3, metrics.getManagerCallTime(ManagerCall.CURSOR_NEXT).getCount());
+        assertEquals("Close fail", 1, metrics.getManagerCallTime(ManagerCall.CURSOR_CLOSE).getCount());
+        assertEquals("Load fail", 0, metrics.getManagerCallTime(ManagerCall.MARK_PROCESSING_AND_LOAD).getCount());
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram hist = new LatencyHistogram();
+        for(int i = 1; i <= 1000; i++) {
+            hist.record(i);
+        }
+        assertEquals("Count fail", 1000, hist.getCount());
+        assertEquals("Total fail", 500500, hist.getTotal());
+        assertEquals("Max fail", 1000, hist.getMax());
+        assertEquals("Min fail", 1, hist.getValueAtPercentile(0));
+        assertEquals("Max percentile fail", 1000, hist.getValueAtPercentile(100));
+        long p50 = hist.getValueAtPercentile(50);
+        assertTrue("p50 fail: " + p50, p50 >= 500 && p50 <= 500 * 1.125);
+        long p99 = hist.getValueAtPercentile(99);
+        assertTrue("p99 fail: " + p99, p99 >= 990 && p99 <= 1000);
+    }
+
+    @Test
+    public void testBuckets() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE};
+        for(long va : values) {
+            int ind = LatencyHistogram.bucketIndex(va);
+            long highest = LatencyHistogram.bucketHighestValue(ind);
+            assertTrue("Highest fail: " + va, highest >= va);
+            assertTrue("Precision fail: " + va, highest - va <= va / 8);
+            if(ind > 0) assertTrue("Lowest fail: " + va, LatencyHistogram.bucketHighestValue(ind - 1) < va);
+        }
+    }
+
+    private static class StreamingDAO extends TestTaskManager implements StreamingTaskManager<Task> {
+        private StreamingDAO(Task... tasks) {
+            super(tasks);
+        }
+
+        @Override
+        public TaskCursor<Task> openCursor() {
+            final Iterator<? extends Task> iter = markProcessingAndLoad().iterator();
+            return new TaskCursor<Task>() {
+                @Override
+                public Task next() {
+                    return iter.hasNext() ? iter.next() : null;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private static class ListenableProcessor implements TaskStageListenableProcessor {
+        private final TaskStageListener listener = new TaskStageListener() {
+            @Override
+            public void fire(long taskId) {
+            }
+        };
+
+        @Override
+        public List<? extends TaskStageListener> beforeStartListeners() {
+            return ImmutableList.of(listener);
+        }
+
+        @Override
+        public List<? extends TaskStageListener> afterFinishListeners() {
+            return ImmutableList.of(listener);
+        }
+
+        @Override
+        public void process(long taskId) throws Exception {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEnginePollingTest {
+    private final CountDownLatch processed = new CountDownLatch(1);
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicInteger polls = new AtomicInteger();
+    private final TestTaskManager manager = new TestTaskManager() {
+        @Override
+        public Collection<? extends Task> markProcessingAndLoad() {
+            polls.incrementAndGet();
+            if(available.compareAndSet(1, 0)) return ImmutableList.of(new TestTask(42, TestTask.singleStage("Processor")));
+            return ImmutableList.of();
+        }
+    };
+    private final TestProcessorProvider provider = new TestProcessorProvider(new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+            processed.countDown();
+        }
+    });
+
+    @Test
+    public void testWakeUp() throws InterruptedException {
+        TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), manager, provider);
+        // long delays, so only wake up may start the task in time
+        engine.startPolling(10000, 60000);
+        try {
+            while(0 == polls.get()) Thread.sleep(1);
+            available.set(1);
+            engine.wakeUp();
+            assertTrue("Wake up fail", processed.await(5, TimeUnit.SECONDS));
+        } finally {
+            engine.stopPolling();
+        }
+    }
+
+    @Test
+    public void testBackoff() throws InterruptedException {
+        TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), manager, provider);
+        engine.startPolling(10, 40);
+        Thread.sleep(500);
+        engine.stopPolling();
+        // 10 + 20 + 40 + 40 + ... ms, without backoff would be ~50
+        assertTrue("Backoff fail, polls: [" + polls.get() + "]", polls.get() <= 16);
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testDoubleStart() {
+        TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), manager, provider);
+        engine.startPolling(10, 40);
+        try {
+            engine.startPolling(10, 40);
+        } finally {
+            engine.stopPolling();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.synchronizedList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEnginePriorityTest {
+    private final List<Long> processed = synchronizedList(Lists.<Long>newArrayList());
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private final CountDownLatch latch = new CountDownLatch(6);
+    private final TestTaskManager manager = new TestTaskManager() {
+        @Override
+        void finished(long taskId) {
+            latch.countDown();
+        }
+    };
+    private final TestProcessorProvider provider = new TestProcessorProvider(new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+            processed.add(taskId);
+        }
+    });
+
+    @Test
+    public void testPriorities() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TaskEngine engine = TaskEngine.builder(executor, manager, provider)
+                    .priorityDispatch(1000)
+                    .build();
+            // occupies the only thread
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            for(int i = 1; i <= 3; i++) {
+                engine.submit(new PrioritizedTestTask(i, 0));
+                engine.submit(new PrioritizedTestTask(i + 10, 10));
+            }
+            blocker.countDown();
+            assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+            assertEquals("Order fail", ImmutableList.of(11L, 12L, 13L, 1L, 2L, 3L), processed);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAging() throws InterruptedException {
+        QueueExecutor executor = new QueueExecutor();
+        PriorityRunQueue queue = new PriorityRunQueue(executor, TimeUnit.MILLISECONDS.toNanos(1));
+        queue.execute(new Recorder(1), 0);
+        Thread.sleep(50);
+        // waited longer than 5 priority points
+        queue.execute(new Recorder(2), 5);
+        // but not longer than 100 priority points
+        queue.execute(new Recorder(3), 100);
+        assertEquals("Size fail", 3, queue.size());
+        executor.runAll();
+        assertEquals("Order fail", ImmutableList.of(3L, 1L, 2L), processed);
+        assertEquals("Size fail", 0, queue.size());
+    }
+
+    private class Recorder implements Runnable {
+        private final long id;
+
+        private Recorder(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            processed.add(id);
+        }
+    }
+
+    private static class PrioritizedTestTask extends TestTask implements PrioritizedTask {
+        private final int priority;
+
+        private PrioritizedTestTask(long id, int priority) {
+            super(id, TestTask.singleStage("Processor"));
+            this.priority = priority;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+}
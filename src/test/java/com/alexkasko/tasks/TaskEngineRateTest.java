@@ -0,0 +1,76 @@
+package com.alexkasko.tasks;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineRateTest {
+    private static final int TASKS_COUNT = 10;
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_free", "free_finished", "FreeProcessor")
+            .add("running_limited", "finished", "LimitedProcessor")
+            .build();
+
+    private final CountDownLatch latch = new CountDownLatch(TASKS_COUNT);
+    private final TestTaskManager manager = new TestTaskManager() {
+        @Override
+        void finished(long taskId) {
+            latch.countDown();
+        }
+    };
+
+    @Test
+    public void testDeferral() throws InterruptedException {
+        HistogramTaskEngineMetrics metrics = new HistogramTaskEngineMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            TaskEngine engine = TaskEngine.builder(executor, manager, new TestProcessorProvider())
+                    .processorRate("LimitedProcessor", 50)
+                    .metrics(metrics)
+                    .build();
+            long start = System.currentTimeMillis();
+            for(int i = 0; i < TASKS_COUNT; i++) {
+                engine.submit(new TestTask(i, CHAIN));
+            }
+            assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+            long elapsed = System.currentTimeMillis() - start;
+            // 9 deferrals, 20 millis each
+            assertTrue("Rate fail: " + elapsed, elapsed >= 170);
+            HistogramTaskEngineMetrics.ProcessorMetrics pm = metrics.getProcessorMetrics("LimitedProcessor");
+            assertEquals("Throttled fail", TASKS_COUNT - 1, pm.getThrottledTime().getCount());
+            assertEquals("Success fail", TASKS_COUNT, pm.getSucceeded());
+            assertEquals("Unlimited fail", 0, metrics.getProcessorMetrics("FreeProcessor").getThrottledTime().getCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReserve() {
+        TokenBucket tb = new TokenBucket(10, 2);
+        long now = System.nanoTime();
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals("Burst fail", 0, tb.reserve(now));
+        assertEquals("Burst fail", 0, tb.reserve(now));
+        assertEquals("Delay fail", interval, tb.reserve(now));
+        assertEquals("Delay fail", interval * 2, tb.reserve(now));
+        // reserved slots are passed
+        assertEquals("Delay fail", 0, tb.reserve(now + interval * 3));
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testInvalidRate() {
+        TaskEngine.builder(Executors.newSingleThreadExecutor(), manager, new TestProcessorProvider())
+                .processorRate("LimitedProcessor", 0);
+    }
+}
@@ -0,0 +1,98 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineRetryTest {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final TestTaskManager manager = new TestTaskManager() {
+        @Override
+        void finished(long taskId) {
+            latch.countDown();
+        }
+    };
+    private final List<String> events = manager.events;
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final TestProcessorProvider provider = new TestProcessorProvider().add("DataProcessor", new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+            if(attempts.incrementAndGet() <= failures) throw failure;
+        }
+    });
+    private int failures;
+    private Exception failure = new IOException("transient");
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testTransient() throws InterruptedException {
+        failures = 2;
+        run(TaskStageRetryPolicy.builder(3).backoff(10, 10).build());
+        assertEquals("Attempts fail", 3, attempts.get());
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "stage.data_loaded",
+                "stage.running_reports",
+                "stage.finished",
+                "status.success"), events);
+    }
+
+    @Test
+    public void testExhausted() throws InterruptedException {
+        failures = 5;
+        run(TaskStageRetryPolicy.builder(3).backoff(1, 2).build());
+        assertEquals("Attempts fail", 3, attempts.get());
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.created"), events);
+    }
+
+    @Test
+    public void testNotRetryable() throws InterruptedException {
+        failures = 5;
+        failure = new IllegalStateException("permanent");
+        run(TaskStageRetryPolicy.builder(3).backoff(1, 2).retryOn(IOException.class).build());
+        assertEquals("Attempts fail", 1, attempts.get());
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.created"), events);
+    }
+
+    @Test
+    public void testDelays() {
+        TaskStageRetryPolicy policy = TaskStageRetryPolicy.builder(10).backoff(100, 1000).multiplier(3).build();
+        assertEquals("Delay fail", 100, policy.delayMillis(1));
+        assertEquals("Delay fail", 300, policy.delayMillis(2));
+        assertEquals("Delay fail", 900, policy.delayMillis(3));
+        assertEquals("Delay fail", 1000, policy.delayMillis(4));
+    }
+
+    private void run(TaskStageRetryPolicy policy) throws InterruptedException {
+        TaskEngine engine = new TaskEngine(executor, manager, provider);
+        engine.submit(new TestTask(42, TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor").retry(policy)
+                .add("running_reports", "finished", "ReportsProcessor")
+                .build()));
+        assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+    }
+}
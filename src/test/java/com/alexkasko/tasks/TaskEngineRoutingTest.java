@@ -0,0 +1,140 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.synchronizedList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineRoutingTest {
+    private static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_data", "data_loaded", "DataProcessor", "io")
+            .add("running_reports", "reports_built", "ReportsProcessor", "io")
+            .add("running_notify", "finished", "NotifyProcessor")
+            .build();
+
+    private final List<String> events = synchronizedList(Lists.<String>newArrayList());
+    private final TaskProcessorProvider provider = new TaskProcessorProvider() {
+        @Override
+        public TaskStageProcessor provide(final String id) {
+            return new TaskStageProcessor() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    events.add(id + "." + CURRENT.get());
+                }
+            };
+        }
+    };
+
+    @Test
+    public void testRouting() {
+        NamedExecutor def = new NamedExecutor("default");
+        NamedExecutor io = new NamedExecutor("io");
+        NamedExecutor cpu = new NamedExecutor("cpu");
+        TestTaskManager manager = new TestTaskManager(new TestTask(42, CHAIN));
+        TaskEngine engine = TaskEngine.builder(def, manager, provider)
+                .tagExecutor("io", io)
+                .processorExecutor("ReportsProcessor", cpu)
+                .build();
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "DataProcessor.io",
+                "ReportsProcessor.cpu",
+                "NotifyProcessor.default"), events);
+        assertEquals("Status fail", "status.success", manager.events.get(manager.events.size() - 1));
+        assertEquals("Default fail", 1, def.executed);
+        assertEquals("IO fail", 1, io.executed);
+        assertEquals("CPU fail", 1, cpu.executed);
+    }
+
+    @Test
+    public void testPools() throws InterruptedException {
+        int count = 100;
+        final CountDownLatch latch = new CountDownLatch(count);
+        ExecutorService def = Executors.newFixedThreadPool(2, new NamedFactory("default"));
+        ExecutorService io = Executors.newFixedThreadPool(4, new NamedFactory("io"));
+        ExecutorService cpu = Executors.newFixedThreadPool(1, new NamedFactory("cpu"));
+        try {
+            TaskEngine engine = TaskEngine.builder(def, new TestTaskManager() {
+                @Override
+                void finished(long taskId) {
+                    latch.countDown();
+                }
+            }, provider).tagExecutor("io", io).processorExecutor("ReportsProcessor", cpu).build();
+            for(int i = 0; i < count; i++) {
+                engine.submit(new TestTask(i, CHAIN));
+            }
+            assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+            assertEquals("Events fail", count * 3, events.size());
+            for(String ev : events) {
+                if(ev.startsWith("DataProcessor")) assertEquals("IO fail", "DataProcessor.io", ev);
+                if(ev.startsWith("ReportsProcessor")) assertEquals("CPU fail", "ReportsProcessor.cpu", ev);
+                if(ev.startsWith("NotifyProcessor")) assertEquals("Default fail", "NotifyProcessor.default", ev);
+            }
+            // status is persisted before task is released
+            long deadline = System.currentTimeMillis() + 10000;
+            while(engine.inFlight() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+            assertEquals("In flight fail", 0, engine.inFlight());
+        } finally {
+            def.shutdown();
+            io.shutdown();
+            cpu.shutdown();
+        }
+    }
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<String>();
+
+    private static class NamedExecutor implements Executor {
+        private final String name;
+        private int executed = 0;
+
+        private NamedExecutor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executed += 1;
+            String previous = CURRENT.get();
+            CURRENT.set(name);
+            try {
+                command.run();
+            } finally {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    private static class NamedFactory implements ThreadFactory {
+        private final String name;
+
+        private NamedFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    CURRENT.set(name);
+                    r.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.frequency;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineShutdownTest {
+    private final CountDownLatch started = new CountDownLatch(3);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+    private final TestTaskManager manager = new TestTaskManager(task(4, "LoopProcessor"));
+    private final List<String> events = manager.events;
+    private final TestProcessorProvider provider = new TestProcessorProvider(new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+            started.countDown();
+            if(42 == taskId) release.await();
+            throw new IllegalStateException("transient");
+        }
+    }).add("LoopProcessor", new ContextualTaskStageProcessor() {
+        @Override
+        public void process(TaskContext context) throws Exception {
+            started.countDown();
+            for(;;) {
+                context.checkSuspended();
+                Thread.sleep(1);
+            }
+        }
+
+        @Override
+        public void process(long taskId) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+    });
+    private final TaskEngine engine = new TaskEngine(executor, manager, provider);
+
+    @After
+    public void shutdown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDrain() throws InterruptedException {
+        engine.submit(task(1, "LoopProcessor"));
+        engine.submit(task(2, "LoopProcessor"));
+        engine.submit(task(3, "RetriedProcessor"));
+        assertTrue("Start fail", started.await(10, TimeUnit.SECONDS));
+        TaskEngineShutdownReport report = engine.shutdown(10000);
+        assertTrue("Drain fail", report.isDrained());
+        assertEquals("Drained fail", 3, report.getDrained());
+        assertEquals("In flight fail", 0, engine.inFlight());
+        assertEquals("Suspended fail", 3, frequency(events, "status.suspended"));
+        assertEquals("Rollback fail", 3, frequency(events, "stage.created"));
+        assertFalse("Success fail", events.contains("status.success"));
+        assertEquals("Fire fail", 0, engine.fire());
+    }
+
+    @Test
+    public void testUndrained() throws InterruptedException {
+        engine.submit(task(1, "LoopProcessor"));
+        engine.submit(task(2, "LoopProcessor"));
+        engine.submit(task(42, "BlockedProcessor"));
+        assertTrue("Start fail", started.await(10, TimeUnit.SECONDS));
+        TaskEngineShutdownReport report = engine.shutdown(100);
+        assertFalse("Drain fail", report.isDrained());
+        assertEquals("Drained fail", 2, report.getDrained());
+        assertEquals("Undrained fail", ImmutableList.of(42L), report.getUndrained());
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testRejected() throws InterruptedException {
+        assertTrue("Drain fail", engine.shutdown(0).isDrained());
+        engine.submit(task(1, "LoopProcessor"));
+    }
+
+    private static TestTask task(long id, String processorId) {
+        return new TestTask(id, TaskStageChain.builder("created")
+                .add("running", "finished", processorId)
+                .retry(TaskStageRetryPolicy.builder(3).backoff(60000, 60000).build())
+                .build());
+    }
+}
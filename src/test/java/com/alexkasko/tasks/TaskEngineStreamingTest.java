@@ -0,0 +1,105 @@
+package com.alexkasko.tasks;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineStreamingTest {
+    private static final TaskStageChain CHAIN = TestTask.singleStage("NoopProcessor");
+
+    private final QueueExecutor executor = new QueueExecutor();
+
+    @Test
+    public void testBoundedReading() {
+        StreamingDAO dao = new StreamingDAO(10000, 3);
+        TaskEngine engine = TaskEngine.builder(executor, dao, new TestProcessorProvider())
+                .capacity(3)
+                .build();
+        assertEquals("Fire fail", 3, engine.fire());
+        assertEquals("Read fail", 3, dao.read);
+        // no free slots, cursor is closed
+        assertEquals("Closed fail", 1, dao.closed);
+        assertEquals("Fire fail", 0, engine.fire());
+        assertEquals("Read fail", 3, dao.read);
+        assertEquals("Opened fail", 1, dao.opened);
+        executor.runAll();
+        assertEquals("Read fail", 10000, dao.read);
+        assertEquals("Finished fail", 10000, dao.completed);
+        // reopened on re-fires
+        assertTrue("Opened fail", dao.opened > 1);
+        assertEquals("Closed fail", dao.opened, dao.closed);
+        assertEquals("In flight fail", 0, engine.inFlight());
+    }
+
+    @Test
+    public void testUnbounded() {
+        StreamingDAO dao = new StreamingDAO(1000, 1);
+        TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), dao, new TestProcessorProvider());
+        assertEquals("Fire fail", 1000, engine.fire());
+        assertEquals("Finished fail", 1000, dao.completed);
+        assertEquals("Closed fail", 1, dao.closed);
+        // new cursor on next fire
+        assertEquals("Fire fail", 0, engine.fire());
+        assertEquals("Opened fail", 2, dao.opened);
+        assertEquals("Closed fail", 2, dao.closed);
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        StreamingDAO dao = new StreamingDAO(10, 2);
+        TaskEngine engine = TaskEngine.builder(executor, dao, new TestProcessorProvider())
+                .capacity(2)
+                .build();
+        assertEquals("Fire fail", 2, engine.fire());
+        assertEquals("Closed fail", 1, dao.closed);
+        // queued tasks are not started yet
+        assertEquals("Drain fail", 2, engine.shutdown(0).getUndrained().size());
+        executor.runAll();
+        assertEquals("Read fail", 2, dao.read);
+        assertEquals("Fire fail", 0, engine.fire());
+        assertEquals("Opened fail", 1, dao.opened);
+    }
+
+    private class StreamingDAO extends TestTaskManager implements StreamingTaskManager<Task> {
+        private final int count;
+        private final int maxUnfinished;
+        private int read;
+        private int completed;
+        private int opened;
+        private int closed;
+
+        private StreamingDAO(int count, int maxUnfinished) {
+            this.count = count;
+            this.maxUnfinished = maxUnfinished;
+        }
+
+        @Override
+        public TaskCursor<? extends Task> openCursor() {
+            opened += 1;
+            return new TaskCursor<Task>() {
+                @Override
+                public Task next() {
+                    if(read == count) return null;
+                    assertTrue("Memory bound fail", read - completed < maxUnfinished);
+                    return new TestTask(read++, CHAIN);
+                }
+
+                @Override
+                public void close() {
+                    closed += 1;
+                }
+            };
+        }
+
+        @Override
+        void finished(long taskId) {
+            completed += 1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineSubmitTest {
+    private final TestTaskManager manager = new TestTaskManager(task());
+    private final List<String> events = manager.events;
+    private final QueueExecutor executor = new QueueExecutor();
+    private final TestProcessorProvider provider = new TestProcessorProvider(new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+            events.add("process");
+        }
+    });
+    private final TaskEngine engine = new TaskEngine(executor, manager, provider);
+
+    @Test
+    public void testSubmit() {
+        assertTrue("Submit fail", engine.submit(task()));
+        executor.runNext();
+        assertEquals("Events fail", ImmutableList.of("stage.running", "process", "stage.finished", "status.success"), events);
+        assertEquals("In flight fail", 0, engine.inFlight());
+    }
+
+    @Test
+    public void testDeduplication() {
+        assertTrue("Submit fail", engine.submit(task()));
+        assertFalse("Duplicate submit fail", engine.submit(task()));
+        assertEquals("Duplicate fire fail", 0, engine.fire());
+        assertEquals("Queue fail", 1, executor.size());
+        executor.runNext();
+        // finished task may be fired again
+        assertEquals("Fire fail", 1, engine.fire());
+    }
+
+    private static TestTask task() {
+        return new TestTask(42, TestTask.singleStage("Processor"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineTimeoutTest {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final TestTaskManager manager = new TestTaskManager() {
+        @Override
+        void finished(long taskId) {
+            latch.countDown();
+        }
+
+        @Override
+        public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+            events.add("error." + e.getClass().getSimpleName() + "." + lastCompletedStage + "." +
+                    Thread.currentThread().isInterrupted());
+            finished(taskId);
+        }
+    };
+    private final List<String> events = manager.events;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile TaskEngine engine;
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testBlocked() throws InterruptedException {
+        run(new TaskStageProcessor() {
+            @Override
+            public void process(long taskId) throws Exception {
+                Thread.sleep(60000);
+            }
+        }, 0);
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.TaskStageTimeoutException.created.false"), events);
+    }
+
+    @Test
+    public void testBusy() throws InterruptedException {
+        run(new ContextualTaskStageProcessor() {
+            @Override
+            public void process(TaskContext context) throws Exception {
+                for(;;) context.checkSuspended();
+            }
+
+            @Override
+            public void process(long taskId) throws Exception {
+                throw new UnsupportedOperationException();
+            }
+        }, 0);
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.TaskStageTimeoutException.created.false"), events);
+    }
+
+    @Test
+    public void testIgnoringInterruption() throws InterruptedException {
+        run(new TaskStageProcessor() {
+            @Override
+            public void process(long taskId) throws Exception {
+                long deadline = System.currentTimeMillis() + 400;
+                while(System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch(InterruptedException e) {
+                        // swallowed
+                    }
+                }
+            }
+        }, 0);
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.TaskStageTimeoutException.created.false"), events);
+    }
+
+    @Test
+    public void testEngineCheck() throws InterruptedException {
+        run(new TaskStageProcessor() {
+            @Override
+            public void process(long taskId) throws Exception {
+                long deadline = System.currentTimeMillis() + 10000;
+                while(System.currentTimeMillis() < deadline) {
+                    Thread.interrupted();
+                    engine.checkSuspended(taskId);
+                }
+            }
+        }, 0);
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.TaskStageTimeoutException.created.false"), events);
+    }
+
+    @Test
+    public void testAsync() throws InterruptedException {
+        run(new AsyncTaskStageProcessor() {
+            @Override
+            public TaskStageFuture processAsync(long taskId) throws Exception {
+                return new TaskStageFuture();
+            }
+
+            @Override
+            public void process(long taskId) throws Exception {
+                throw new UnsupportedOperationException();
+            }
+        }, 50);
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "error.TaskStageTimeoutException.created.false"), events);
+    }
+
+    @Test
+    public void testInTime() throws InterruptedException {
+        run(new TaskStageProcessor() {
+            @Override
+            public void process(long taskId) throws Exception {
+                // nothing
+            }
+        }, 0);
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "stage.data_loaded",
+                "status.success"), events);
+    }
+
+    private void run(TaskStageProcessor processor, long stageTimeout) throws InterruptedException {
+        TaskStageChain.Builder chain = TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor");
+        if(stageTimeout > 0) chain.timeout(stageTimeout);
+        engine = TaskEngine.builder(executor, manager, new TestProcessorProvider(processor)).stageTimeout(100).build();
+        engine.submit(new TestTask(42, chain.build()));
+        assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,89 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskEngineTransitionTest {
+    private final TransitionDAO dao = new TransitionDAO();
+    private final List<String> events = dao.events;
+    private final TaskProcessorProvider provider = new TaskProcessorProvider() {
+        @Override
+        public TaskStageProcessor provide(final String id) {
+            return new TaskStageProcessor() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    events.add("process." + id);
+                    if(suspendAfterData && "DataProcessor".equals(id)) engine.suspend(taskId);
+                    if(suspendDuringData && "DataProcessor".equals(id)) {
+                        engine.suspend(taskId);
+                        engine.checkSuspended(taskId);
+                    }
+                }
+            };
+        }
+    };
+    private final TaskEngine engine = new TaskEngine(MoreExecutors.sameThreadExecutor(), dao, provider);
+    private boolean suspendAfterData = false;
+    private boolean suspendDuringData = false;
+
+    @Test
+    public void testSuccess() {
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "process.DataProcessor",
+                "transition.data_loaded.running_reports",
+                "process.ReportsProcessor",
+                "success.finished"), events);
+    }
+
+    @Test
+    public void testSuspendBetweenStages() {
+        suspendAfterData = true;
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "process.DataProcessor",
+                "suspended.data_loaded"), events);
+    }
+
+    @Test
+    public void testSuspendDuringStage() {
+        suspendDuringData = true;
+        engine.fire();
+        assertEquals("Events fail", ImmutableList.of(
+                "stage.running_data",
+                "process.DataProcessor",
+                "suspended.created"), events);
+    }
+
+    private static class TransitionDAO extends TestTaskManager implements TaskTransitionManager<Task> {
+        private TransitionDAO() {
+            super(new TestTask(42));
+        }
+
+        @Override
+        public void updateStageTransition(long taskId, String completedStage, String startedStage) {
+            events.add("transition." + completedStage + "." + startedStage);
+        }
+
+        @Override
+        public void updateStageAndStatusSuccess(long taskId, String completedStage) {
+            events.add("success." + completedStage);
+        }
+
+        @Override
+        public void updateStageAndStatusSuspended(long taskId, String lastCompletedStage) {
+            events.add("suspended." + lastCompletedStage);
+        }
+    }
+}
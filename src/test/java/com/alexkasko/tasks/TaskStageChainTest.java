@@ -0,0 +1,239 @@
+package com.alexkasko.tasks;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class TaskStageChainTest {
+
+    @Test
+    public void testOrdinals() {
+        TaskStageChain chain = chain();
+        assertEquals("Size fail", 3, chain.size());
+        assertEquals("Ordinal fail", 0, chain.ordinal("created"));
+        assertEquals("Ordinal fail", 1, chain.ordinal("running_data"));
+        assertEquals("Ordinal fail", 1, chain.ordinal("data_loaded"));
+        assertEquals("Ordinal fail", 2, chain.ordinal("finished"));
+        assertSame("StageAt fail", chain.forName("running_reports"), chain.stageAt(2));
+        assertEquals("Stage ordinal fail", 2, chain.stageAt(2).getOrdinal());
+    }
+
+    @Test
+    public void testNavigation() {
+        TaskStageChain chain = chain();
+        TaskStageChain.Stage start = chain.forName("created");
+        assertTrue("HasNext fail", chain.hasNext(start));
+        TaskStageChain.Stage data = chain.next(start);
+        assertEquals("Next fail", "data_loaded", data.getCompleted());
+        assertSame("Previous fail", start, chain.previous(data));
+        TaskStageChain.Stage last = chain.next(data);
+        assertFalse("HasNext fail", chain.hasNext(last));
+        assertEquals("LastCompleted fail", "data_loaded", chain.lastCompletedStage("running_reports"));
+    }
+
+    @Test
+    public void testForeignInstance() {
+        // tasks may return new chain instance on each call
+        TaskStageChain chain = chain();
+        TaskStageChain.Stage foreign = chain().forName("running_data");
+        assertSame("Foreign next fail", chain.forName("finished"), chain.next(foreign));
+        assertSame("Foreign previous fail", chain.forName("created"), chain.previous(foreign));
+    }
+
+    @Test
+    public void testBuilderReuse() throws Exception {
+        TaskStageChain.Builder builder = TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor");
+        TaskStageChain chain = builder.build();
+        builder.add("running_reports", "finished", "ReportsProcessor");
+        assertEquals("Size fail", 2, chain.size());
+        // stage list is serialized
+        TaskStageChain copy = (TaskStageChain) deserialize(serialize(chain));
+        assertEquals("Copy size fail", 2, copy.size());
+        assertEquals("Extended size fail", 3, builder.build().size());
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testUnknownStage() {
+        TaskStageChain other = TaskStageChain.builder("created")
+                .add("running_other", "other_loaded", "OtherProcessor")
+                .build();
+        chain().next(other.forName("other_loaded"));
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testInvalidOrdinal() {
+        chain().stageAt(3);
+    }
+
+    @Test
+    public void testRetry() {
+        TaskStageRetryPolicy policy = TaskStageRetryPolicy.builder(3).build();
+        TaskStageChain chain = TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor", "io").retry(policy)
+                .add("running_reports", "finished", "ReportsProcessor")
+                .build();
+        assertSame("Policy fail", policy, chain.forName("running_data").getRetryPolicy());
+        assertEquals("Tag fail", "io", chain.forName("running_data").getTag());
+        assertNull("No policy fail", chain.forName("finished").getRetryPolicy());
+    }
+
+    @Test(expected = TaskEngineException.class)
+    public void testRetryStart() {
+        TaskStageChain.builder("created").retry(TaskStageRetryPolicy.builder(3).build());
+    }
+
+    @Test
+    public void testTags() {
+        TaskStageChain chain = TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor", "io")
+                .add("running_reports", "finished", "ReportsProcessor")
+                .build();
+        assertEquals("Tag fail", "io", chain.forName("running_data").getTag());
+        assertNull("No tag fail", chain.forName("finished").getTag());
+        assertNull("Start tag fail", chain.forName("created").getTag());
+    }
+
+    @Test
+    public void testRegistry() {
+        TaskStageChain chain = registered("testRegistry", 1);
+        assertTrue("Registered fail", chain.isRegistered());
+        // chains built per task instance are shared
+        assertSame("Intern fail", chain, registered("testRegistry", 1));
+        assertSame("Lookup fail", chain, TaskStageChain.registered("testRegistry", 1));
+        assertSame("Stage intern fail", chain.forName("data_loaded"), registered("testRegistry", 1).forName("data_loaded"));
+        assertFalse("Version fail", chain == registered("testRegistry", 2));
+        assertFalse("Unregistered fail", chain().isRegistered());
+        try {
+            TaskStageChain.builder("created")
+                    .add("running_data", "data_loaded", "OtherProcessor")
+                    .register("testRegistry", 1);
+            throw new AssertionError("Conflict fail");
+        } catch (TaskEngineException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        TaskStageChain chain = registered("testUnregister", 1);
+        assertTrue("Unregister fail", TaskStageChain.unregister("testUnregister", 1));
+        assertFalse("Registered fail", chain.isRegistered());
+        assertFalse("Repeated unregister fail", TaskStageChain.unregister("testUnregister", 1));
+        try {
+            TaskStageChain.registered("testUnregister", 1);
+            throw new AssertionError("Lookup fail");
+        } catch (TaskEngineException e) {
+            // expected
+        }
+        // serialized in full form
+        TaskStageChain copy = (TaskStageChain) deserialize(serialize(chain));
+        assertFalse("Copy fail", chain == copy);
+        assertSame("Register again fail", chain, TaskStageChain.register("testUnregister", 1, chain));
+    }
+
+    @Test
+    public void testRegistryRetryable() {
+        // new condition instance is created on each chain build
+        TaskStageChain chain = retryableChain("testRegistryRetryable", 1);
+        assertSame("Condition intern fail", chain, retryableChain("testRegistryRetryable", 1));
+        TaskStageChain typed = typedChain("testRegistryTyped", IllegalStateException.class);
+        assertSame("Types intern fail", typed, typedChain("testRegistryTyped", IllegalStateException.class));
+        try {
+            typedChain("testRegistryTyped", IllegalArgumentException.class);
+            throw new AssertionError("Types conflict fail");
+        } catch (TaskEngineException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        TaskStageChain chain = registered("testSerialization", 1);
+        byte[] ref = serialize(chain);
+        assertSame("Resolve fail", chain, deserialize(ref));
+        TaskStageChain unregistered = chain();
+        byte[] full = serialize(unregistered);
+        assertTrue("Compact fail, ref: [" + ref.length + "], full: [" + full.length + "]", ref.length * 4 < full.length);
+        TaskStageChain copy = (TaskStageChain) deserialize(full);
+        assertEquals("Copy fail", "finished", copy.next(copy.forName("data_loaded")).getCompleted());
+    }
+
+    @Test
+    public void testPreviousVersionSerialization() throws Exception {
+        // chain serialized by version 1.2, before ordinals were introduced
+        InputStream is = getClass().getResourceAsStream("chain-1.2.ser");
+        try {
+            TaskStageChain chain = (TaskStageChain) new ObjectInputStream(is).readObject();
+            assertEquals("Size fail", 3, chain.size());
+            assertEquals("Next fail", "finished", chain.next(chain.forName("data_loaded")).getCompleted());
+            assertEquals("Ordinal fail", 0, chain.ordinal("created"));
+            assertEquals("Ordinal fail", 1, chain.forName("running_data").getOrdinal());
+            assertEquals("Ordinal fail", 2, chain.ordinal("finished"));
+            assertSame("StageAt fail", chain.forName("running_reports"), chain.stageAt(2));
+            assertFalse("Registered fail", chain.isRegistered());
+        } finally {
+            is.close();
+        }
+    }
+
+    private static TaskStageChain registered(String id, int version) {
+        return TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor").retry(TaskStageRetryPolicy.builder(3).build())
+                .add("running_reports", "finished", "ReportsProcessor")
+                .register(id, version);
+    }
+
+    private static TaskStageChain retryableChain(String id, int version) {
+        TaskStageRetryPolicy policy = TaskStageRetryPolicy.builder(3).retryIf(new TaskStageRetryPolicy.Retryable() {
+            private static final long serialVersionUID = 5302743871961587409L;
+
+            @Override
+            public boolean isRetryable(Exception e) {
+                return e instanceof IllegalStateException;
+            }
+        }).build();
+        return TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor").retry(policy)
+                .register(id, version);
+    }
+
+    private static TaskStageChain typedChain(String id, Class<?> type) {
+        return TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor").retry(TaskStageRetryPolicy.builder(3).retryOn(type).build())
+                .register(id, 1);
+    }
+
+    private static byte[] serialize(Object obj) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(obj);
+        oos.close();
+        return baos.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    private static TaskStageChain chain() {
+        return TaskStageChain.builder("created")
+                .add("running_data", "data_loaded", "DataProcessor")
+                .add("running_reports", "finished", "ReportsProcessor")
+                .build();
+    }
+}
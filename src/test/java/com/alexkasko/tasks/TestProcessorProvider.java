@@ -0,0 +1,48 @@
+package com.alexkasko.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provider used in engine tests, returns processors registered by id
+ * and fallback processor (no-op by default) for all other ids.
+ *
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+class TestProcessorProvider implements TaskProcessorProvider {
+    static final TaskStageProcessor NOOP = new TaskStageProcessor() {
+        @Override
+        public void process(long taskId) throws Exception {
+        }
+    };
+
+    private final Map<String, TaskStageProcessor> processors = new HashMap<String, TaskStageProcessor>();
+    private final TaskStageProcessor fallback;
+
+    TestProcessorProvider() {
+        this(NOOP);
+    }
+
+    TestProcessorProvider(TaskStageProcessor fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Registers processor, must be called before engine start
+     *
+     * @param id processor id
+     * @param processor processor
+     * @return provider itself
+     */
+    TestProcessorProvider add(String id, TaskStageProcessor processor) {
+        processors.put(id, processor);
+        return this;
+    }
+
+    @Override
+    public TaskStageProcessor provide(String id) {
+        TaskStageProcessor res = processors.get(id);
+        return null != res ? res : fallback;
+    }
+}
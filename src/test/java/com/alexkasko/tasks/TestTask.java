@@ -0,0 +1,59 @@
+package com.alexkasko.tasks;
+
+/**
+ * Task used in engine tests, by default runs two-stage "data, reports" chain from "created" stage.
+ *
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+class TestTask implements Task {
+    static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("running_data", "data_loaded", "DataProcessor")
+            .add("running_reports", "finished", "ReportsProcessor")
+            .build();
+
+    private final long id;
+    private final String stage;
+    private final TaskStageChain chain;
+
+    TestTask(long id) {
+        this(id, CHAIN);
+    }
+
+    TestTask(long id, TaskStageChain chain) {
+        this(id, "created", chain);
+    }
+
+    TestTask(long id, String stage, TaskStageChain chain) {
+        this.id = id;
+        this.stage = stage;
+        this.chain = chain;
+    }
+
+    /**
+     * Single-stage chain: "created", "running", "finished"
+     *
+     * @param processorId stage processor id
+     * @return chain instance
+     */
+    static TaskStageChain singleStage(String processorId) {
+        return TaskStageChain.builder("created")
+                .add("running", "finished", processorId)
+                .build();
+    }
+
+    @Override
+    public TaskStageChain stageChain() {
+        return chain;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getStageName() {
+        return stage;
+    }
+}
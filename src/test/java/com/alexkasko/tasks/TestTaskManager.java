@@ -0,0 +1,62 @@
+package com.alexkasko.tasks;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.synchronizedList;
+
+/**
+ * Manager used in engine tests, returns the same tasks on each load and records updates
+ * as "stage.[stage]", "status.success", "status.suspended" and "error.[last completed stage]" events.
+ * Tests override {@link #finished(long)} to wait for status updates.
+ *
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+class TestTaskManager implements TaskManager<Task> {
+    final List<String> events = synchronizedList(Lists.<String>newArrayList());
+    private final List<Task> loaded;
+
+    TestTaskManager(Task... loaded) {
+        this.loaded = Arrays.asList(loaded);
+    }
+
+    /**
+     * Called after each status update
+     *
+     * @param taskId task id
+     */
+    void finished(long taskId) {
+    }
+
+    @Override
+    public Collection<? extends Task> markProcessingAndLoad() {
+        return loaded;
+    }
+
+    @Override
+    public void updateStage(long taskId, String stage) {
+        events.add("stage." + stage);
+    }
+
+    @Override
+    public void updateStatusSuccess(long taskId) {
+        events.add("status.success");
+        finished(taskId);
+    }
+
+    @Override
+    public void updateStatusSuspended(long taskId) {
+        events.add("status.suspended");
+        finished(taskId);
+    }
+
+    @Override
+    public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+        events.add("error." + lastCompletedStage);
+        finished(taskId);
+    }
+}
@@ -0,0 +1,98 @@
+package com.alexkasko.tasks.vthreads;
+
+import com.alexkasko.tasks.Task;
+import com.alexkasko.tasks.TaskManager;
+import com.alexkasko.tasks.TaskProcessorProvider;
+import com.alexkasko.tasks.TaskStageChain;
+import com.alexkasko.tasks.TaskStageProcessor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Single stage task, which processor blocks for specified time as JDBC or HTTP call stand-in
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+class BlockingTask implements Task {
+    static final TaskStageChain CHAIN = TaskStageChain.builder("created")
+            .add("blocking", "finished", "blocking")
+            .build();
+
+    private final long id;
+
+    BlockingTask(long id) {
+        this.id = id;
+    }
+
+    @Override
+    public TaskStageChain stageChain() {
+        return CHAIN;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getStageName() {
+        return "created";
+    }
+
+    static TaskProcessorProvider provider(final long blockMillis) {
+        final TaskStageProcessor processor = new TaskStageProcessor() {
+            @Override
+            public void process(long taskId) throws Exception {
+                Thread.sleep(blockMillis);
+            }
+        };
+        return new TaskProcessorProvider() {
+            @Override
+            public TaskStageProcessor provide(String id) {
+                return processor;
+            }
+        };
+    }
+
+    /**
+     * Tasks are submitted directly, DAO only counts finished tasks
+     */
+    static class Manager implements TaskManager<BlockingTask> {
+        private volatile CountDownLatch latch;
+
+        void expect(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        void await() throws InterruptedException {
+            latch.await();
+        }
+
+        @Override
+        public Collection<BlockingTask> markProcessingAndLoad() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void updateStage(long taskId, String stage) {
+        }
+
+        @Override
+        public void updateStatusSuccess(long taskId) {
+            latch.countDown();
+        }
+
+        @Override
+        public void updateStatusSuspended(long taskId) {
+            latch.countDown();
+        }
+
+        @Override
+        public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.alexkasko.tasks.vthreads;
+
+import com.alexkasko.tasks.TaskEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time of running {@code tasks} concurrent tasks, each blocking for {@code blockMillis}
+ * in its single stage, on fixed pool of 400 platform threads vs virtual thread per task executor.
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlockingTasksBenchmark {
+    private static final int PLATFORM_THREADS = 400;
+
+    @Param({"platform", "virtual"})
+    private String executorType;
+    @Param({"10000"})
+    private int tasks;
+    @Param({"50"})
+    private long blockMillis;
+
+    private ExecutorService executor;
+    private BlockingTask.Manager manager;
+    private TaskEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = "virtual".equals(executorType) ? VirtualThreads.newExecutor() :
+                Executors.newFixedThreadPool(PLATFORM_THREADS);
+        manager = new BlockingTask.Manager();
+        engine = new TaskEngine(executor, manager, BlockingTask.provider(blockMillis));
+    }
+
+    @Setup(Level.Invocation)
+    public void expect() {
+        manager.expect(tasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void runAll() throws InterruptedException {
+        for(int i = 0; i < tasks; i++) {
+            engine.submit(new BlockingTask(i));
+        }
+        manager.await();
+    }
+}
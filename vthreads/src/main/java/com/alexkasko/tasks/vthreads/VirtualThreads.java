@@ -0,0 +1,43 @@
+package com.alexkasko.tasks.vthreads;
+
+import com.alexkasko.tasks.TaskEngine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads execution mode for {@link TaskEngine}: each task is run through all its stages
+ * on its own new virtual thread, so stage processors blocked on JDBC or HTTP calls don't hold
+ * platform threads. Engine doesn't use monitors around blocking calls, so its virtual threads
+ * are not pinned to carriers. Processors should use {@link java.util.concurrent.locks.Lock}s
+ * instead of {@code synchronized} around their own blocking calls for the same reason.
+ * Should be combined with capacity-aware mode (see {@link TaskEngine.Builder#capacity(int)})
+ * to limit number of tasks in flight, as executor itself has no limit:
+ *
+ * <pre>
+ * ExecutorService executor = VirtualThreads.newExecutor();
+ * TaskEngine engine = TaskEngine.builder(executor, manager, provider)
+ *         .capacity(10000)
+ *         .build();
+ * </pre>
+ *
+ * @author alexkasko
+ * Date: 10/16/26
+ * @see TaskEngine
+ */
+public class VirtualThreads {
+    private static final String THREAD_NAME_PREFIX = "task-engine-";
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Creates executor, that starts new virtual thread for each task.
+     * Executor should be closed on application shutdown.
+     *
+     * @return virtual thread per task executor
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+    }
+}
@@ -0,0 +1,114 @@
+package com.alexkasko.tasks.vthreads;
+
+import com.alexkasko.tasks.Task;
+import com.alexkasko.tasks.TaskEngine;
+import com.alexkasko.tasks.TaskManager;
+import com.alexkasko.tasks.TaskProcessorProvider;
+import com.alexkasko.tasks.TaskStageChain;
+import com.alexkasko.tasks.TaskStageProcessor;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: alexkasko
+ * Date: 10/16/26
+ */
+public class VirtualThreadsTest {
+    private static final int TASKS_COUNT = 1000;
+
+    private final CountDownLatch latch = new CountDownLatch(TASKS_COUNT);
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger virtual = new AtomicInteger();
+
+    @Test
+    public void testBlockingTasks() throws InterruptedException {
+        ExecutorService executor = VirtualThreads.newExecutor();
+        try {
+            TaskEngine engine = TaskEngine.builder(executor, new DAO(), new Provider()).build();
+            for(int i = 0; i < TASKS_COUNT; i++) {
+                engine.submit(new TestTask(i));
+            }
+            // all tasks block concurrently, 1000 sequential sleeps would take 100 seconds
+            assertTrue("Timeout fail", latch.await(10, TimeUnit.SECONDS));
+            assertEquals("Success fail", TASKS_COUNT, succeeded.get());
+            assertEquals("Virtual fail", TASKS_COUNT * 2, virtual.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static class TestTask implements Task {
+        private final long id;
+
+        private TestTask(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public TaskStageChain stageChain() {
+            return TaskStageChain.builder("created")
+                    .add("running_data", "data_loaded", "DataProcessor")
+                    .add("running_reports", "finished", "ReportsProcessor")
+                    .build();
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public String getStageName() {
+            return "created";
+        }
+    }
+
+    private class DAO implements TaskManager<TestTask> {
+        @Override
+        public Collection<TestTask> markProcessingAndLoad() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void updateStage(long taskId, String stage) {
+        }
+
+        @Override
+        public void updateStatusSuccess(long taskId) {
+            succeeded.incrementAndGet();
+            latch.countDown();
+        }
+
+        @Override
+        public void updateStatusSuspended(long taskId) {
+            latch.countDown();
+        }
+
+        @Override
+        public void updateStatusError(long taskId, Exception e, String lastCompletedStage) {
+            latch.countDown();
+        }
+    }
+
+    private class Provider implements TaskProcessorProvider {
+        @Override
+        public TaskStageProcessor provide(String id) {
+            return new TaskStageProcessor() {
+                @Override
+                public void process(long taskId) throws Exception {
+                    if(Thread.currentThread().isVirtual()) virtual.incrementAndGet();
+                    Thread.sleep(50);
+                }
+            };
+        }
+    }
+}